@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.proliming.commons.utils.CopyUtils;
+
+/**
+ * Compares the {@code FileChannel} based file copy of {@link CopyUtils} with the
+ * buffered stream copy it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FileCopyBenchmark {
+
+    @Param({"4096", "1048576", "67108864"})
+    private int size;
+
+    private File source;
+
+    private File target;
+
+    @Setup
+    public void createFiles() throws IOException {
+        this.source = File.createTempFile("copy-benchmark", ".src");
+        this.target = File.createTempFile("copy-benchmark", ".dst");
+        byte[] content = new byte[this.size];
+        new Random(42).nextBytes(content);
+        CopyUtils.copy(content, this.source);
+    }
+
+    @TearDown
+    public void deleteFiles() {
+        this.source.delete();
+        this.target.delete();
+    }
+
+    @Benchmark
+    public long transfer() throws IOException {
+        return CopyUtils.transfer(this.source, this.target);
+    }
+
+    @Benchmark
+    public long copyStream() throws IOException {
+        InputStream in = new FileInputStream(this.source);
+        try {
+            OutputStream out = new FileOutputStream(this.target);
+            try {
+                return CopyUtils.copyStream(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The copy that {@code CopyUtils.copy(File, File)} performed before: buffered
+     * streams with a {@link CopyUtils#BUFFER_SIZE} transfer buffer.
+     */
+    @Benchmark
+    public long bufferedStreams() throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(this.source));
+        try {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(this.target));
+            try {
+                byte[] buffer = new byte[CopyUtils.BUFFER_SIZE];
+                long count = 0;
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, bytesRead);
+                    count += bytesRead;
+                }
+                out.flush();
+                return count;
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+}
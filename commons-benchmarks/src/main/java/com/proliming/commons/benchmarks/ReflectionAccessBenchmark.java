@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.proliming.commons.utils.ReflectionUtils;
+import com.proliming.commons.utils.ReflectionUtils.FieldAccessor;
+import com.proliming.commons.utils.ReflectionUtils.MethodInvoker;
+
+/**
+ * Compares the cached {@link FieldAccessor} and {@link MethodInvoker} of
+ * {@link ReflectionUtils} with the reflective access they replace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReflectionAccessBenchmark {
+
+    private final Bean bean = new Bean();
+
+    private Field field;
+
+    private Method method;
+
+    private FieldAccessor fieldAccessor;
+
+    private MethodInvoker methodInvoker;
+
+    @Setup
+    public void lookUp() {
+        this.field = ReflectionUtils.findField(Bean.class, "value");
+        ReflectionUtils.makeAccessible(this.field);
+        this.method = ReflectionUtils.findMethod(Bean.class, "getValue");
+        this.fieldAccessor = ReflectionUtils.getFieldAccessor(this.field);
+        this.methodInvoker = ReflectionUtils.getMethodInvoker(this.method);
+    }
+
+    @Benchmark
+    public Object fieldGet() {
+        return ReflectionUtils.getField(this.field, this.bean);
+    }
+
+    @Benchmark
+    public Object fieldAccessorGet() {
+        return this.fieldAccessor.get(this.bean);
+    }
+
+    @Benchmark
+    public int fieldAccessorGetInt() {
+        return this.fieldAccessor.getInt(this.bean);
+    }
+
+    @Benchmark
+    public void fieldSet() {
+        ReflectionUtils.setField(this.field, this.bean, 7);
+    }
+
+    @Benchmark
+    public void fieldAccessorSet() {
+        this.fieldAccessor.set(this.bean, 7);
+    }
+
+    @Benchmark
+    public Object methodInvoke() {
+        return ReflectionUtils.invokeMethod(this.method, this.bean);
+    }
+
+    @Benchmark
+    public Object methodInvokerInvoke() {
+        return this.methodInvoker.invoke(this.bean);
+    }
+
+    /**
+     * The bean accessed through reflection.
+     */
+    public static class Bean {
+
+        private int value = 42;
+
+        public int getValue() {
+            return this.value;
+        }
+    }
+
+}
@@ -17,12 +17,17 @@
 package com.proliming.commons.io;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.net.JarURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.jar.JarEntry;
 
 import com.proliming.commons.utils.ResourceUtils;
 
@@ -125,18 +130,43 @@ public abstract class AbstractFileResolvingResource extends AbstractResource {
         }
     }
 
+    /**
+     * This implementation resolves the length without reading the content:
+     * through the file system for file URLs, from the jar entry for jar URLs
+     * and from the content-length header otherwise. Only jar entries of
+     * unknown size fall back to reading the content.
+     */
     @Override
     public long contentLength() throws IOException {
         URL url = getURL();
         if (ResourceUtils.isFileURL(url)) {
             // Proceed with file system resolution...
-            return getFile().length();
-        } else {
-            // Try a URL connection content-length header...
-            URLConnection con = url.openConnection();
-            customizeConnection(con);
-            return con.getContentLength();
+            try {
+                return Files.size(getFile().toPath());
+            } catch (NoSuchFileException ex) {
+                throw new FileNotFoundException(getDescription() +
+                        " cannot be resolved in the file system for resolving its content length");
+            }
+        }
+        URLConnection con = url.openConnection();
+        customizeConnection(con);
+        if (con instanceof JarURLConnection) {
+            // Read the size from the jar's central directory...
+            JarURLConnection jarCon = (JarURLConnection) con;
+            try {
+                JarEntry entry = jarCon.getJarEntry();
+                if (entry != null && entry.getSize() >= 0) {
+                    return entry.getSize();
+                }
+            } finally {
+                if (!jarCon.getUseCaches()) {
+                    jarCon.getJarFile().close();
+                }
+            }
+            return super.contentLength();
         }
+        // Try a URL connection content-length header...
+        return con.getContentLengthLong();
     }
 
     @Override
@@ -23,7 +23,10 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 
+import com.proliming.commons.utils.BufferPool;
 import com.proliming.commons.utils.ResourceUtils;
 import com.proliming.commons.utils.Verify;
 
@@ -37,6 +40,11 @@ import com.proliming.commons.utils.Verify;
  */
 public abstract class AbstractResource implements Resource {
 
+    /**
+     * Digest algorithm used for {@link #getETag() entity tags}: "SHA-256".
+     */
+    public static final String ETAG_ALGORITHM = "SHA-256";
+
     /**
      * This implementation checks whether a File can be opened,
      * falling back to whether an InputStream can be opened.
@@ -73,6 +81,15 @@ public abstract class AbstractResource implements Resource {
         return false;
     }
 
+    /**
+     * This implementation returns {@link Channels#newChannel(InputStream)}
+     * with the result of {@link #getInputStream()}.
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        return Channels.newChannel(getInputStream());
+    }
+
     /**
      * This implementation throws a FileNotFoundException, assuming
      * that the resource cannot be resolved to a URL.
@@ -107,25 +124,36 @@ public abstract class AbstractResource implements Resource {
 
     /**
      * This implementation reads the entire InputStream to calculate the
-     * content length. Subclasses will almost always be able to provide
-     * a more optimal version of this, e.g. checking a File length.
+     * content length, as a last resort. Subclasses will almost always be able
+     * to provide a more optimal version of this, e.g. checking a File length.
      *
      * @throws IllegalStateException if {@link #getInputStream()} returns null.
-     * @see #getInputStream()
+     * @see #readContentLength()
      */
     @Override
     public long contentLength() throws IOException {
+        return readContentLength();
+    }
+
+    /**
+     * Determine the content length by reading the entire InputStream.
+     *
+     * @throws IllegalStateException if {@link #getInputStream()} returns null.
+     * @see #getInputStream()
+     */
+    protected long readContentLength() throws IOException {
         InputStream is = this.getInputStream();
         Verify.notNull(is, "resource input stream must not be null");
+        byte[] buf = BufferPool.acquireHeap();
         try {
             long size = 0;
-            byte[] buf = new byte[255];
             int read;
             while ((read = is.read(buf)) != -1) {
                 size += read;
             }
             return size;
         } finally {
+            BufferPool.release(buf);
             try {
                 is.close();
             } catch (IOException ex) {
@@ -133,6 +161,49 @@ public abstract class AbstractResource implements Resource {
         }
     }
 
+    /**
+     * This implementation computes the digest by streaming the content once, from the
+     * memory mapping for {@link MappedResource MappedResources}. The result is cached
+     * per algorithm for resources with a last-modified timestamp, and reused for as
+     * long as the timestamp and the content length stay unchanged.
+     * <p>Supports all {@link java.security.MessageDigest} algorithms of the JVM,
+     * plus "CRC32" and, on Java 9 or higher, "CRC32C".
+     *
+     * @param algorithm the digest algorithm, e.g. "SHA-256" or "CRC32C"
+     *
+     * @return the digest; a fresh array on every call
+     *
+     * @throws IOException              if the content cannot be read
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    public byte[] digest(String algorithm) throws IOException {
+        return ResourceDigests.digest(this, algorithm);
+    }
+
+    /**
+     * Return the {@linkplain #digest(String) digest} of the content as
+     * lower-case hexadecimal string.
+     *
+     * @param algorithm the digest algorithm, e.g. "SHA-256" or "CRC32C"
+     *
+     * @throws IOException if the content cannot be read
+     * @see #digest(String)
+     */
+    public String digestAsHex(String algorithm) throws IOException {
+        return ResourceDigests.toHexString(digest(algorithm));
+    }
+
+    /**
+     * Return a strong HTTP entity tag for the content: the quoted hexadecimal
+     * {@link #ETAG_ALGORITHM} digest.
+     *
+     * @throws IOException if the content cannot be read
+     * @see #digest(String)
+     */
+    public String getETag() throws IOException {
+        return "\"" + digestAsHex(ETAG_ALGORITHM) + "\"";
+    }
+
     /**
      * This implementation checks the timestamp of the underlying File,
      * if available.
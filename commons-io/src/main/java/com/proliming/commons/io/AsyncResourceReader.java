@@ -0,0 +1,330 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.proliming.commons.utils.BufferPool;
+import com.proliming.commons.utils.CopyUtils;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Reads the content of {@link Resource Resources} asynchronously, without blocking
+ * the calling thread.
+ * <p/>
+ * <p>{@link FileSystemResource} and {@link PathResource} content on the default file
+ * system is read through an {@link AsynchronousFileChannel}. Only where the operating
+ * system supports asynchronous file I/O, as on Windows, is no thread held while the
+ * I/O is pending; elsewhere, including Linux, the JDK emulates the channel by performing
+ * blocking reads on the threads of its executor, so concurrent reads occupy as many
+ * threads as with blocking calls. All other resources (class path, URL, byte array etc.)
+ * are read with blocking calls on the given executor.
+ * <p>Content is either delivered as a whole, via {@link #read(Resource)}, or in chunks
+ * to a {@link ChunkHandler}, via {@link #read(Resource, ChunkHandler)}. In the latter
+ * case the next chunk is only read once the handler returns, so a slow handler never
+ * causes content to pile up in memory.
+ */
+public class AsyncResourceReader {
+
+    /**
+     * Default size of the chunks handed to a {@link ChunkHandler}: 64 KB.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final Executor executor;
+
+    private final ExecutorService channelExecutor;
+
+    /**
+     * Create a new {@code AsyncResourceReader}.
+     *
+     * @param executor the executor to perform blocking reads on; if it is an
+     *                 {@link ExecutorService}, it also serves asynchronous file
+     *                 channels, which perform their reads on it where the operating
+     *                 system does not support asynchronous file I/O; otherwise these
+     *                 are served by the JVM's default asynchronous channel group
+     */
+    public AsyncResourceReader(Executor executor) {
+        Verify.notNull(executor, "Executor must not be null");
+        this.executor = executor;
+        this.channelExecutor = (executor instanceof ExecutorService ? (ExecutorService) executor : null);
+    }
+
+    /**
+     * Read the entire content of the given resource.
+     *
+     * @param resource the resource to read
+     *
+     * @return a future completed with a heap buffer holding the content, positioned
+     * at zero, or completed exceptionally if the content cannot be read
+     */
+    public CompletableFuture<ByteBuffer> read(Resource resource) {
+        Verify.notNull(resource, "Resource must not be null");
+        CompletableFuture<ByteBuffer> future = new CompletableFuture<ByteBuffer>();
+        Path path = resolvePath(resource);
+        if (path != null) {
+            readFile(path, future);
+        } else {
+            readBlocking(resource, future);
+        }
+        return future;
+    }
+
+    /**
+     * Read the content of the given resource in chunks of {@link #DEFAULT_CHUNK_SIZE}.
+     *
+     * @see #read(Resource, int, ChunkHandler)
+     */
+    public CompletableFuture<Long> read(Resource resource, ChunkHandler handler) {
+        return read(resource, DEFAULT_CHUNK_SIZE, handler);
+    }
+
+    /**
+     * Read the content of the given resource in chunks, handing each chunk to the
+     * given handler once it has been read. Chunks are handed over one at a time,
+     * in order, and the next chunk is only read once the handler returns.
+     *
+     * @param resource  the resource to read
+     * @param chunkSize the maximum size of a chunk
+     * @param handler   the handler to process the chunks
+     *
+     * @return a future completed with the total number of bytes read once the handler
+     * has processed the last chunk, or completed exceptionally if the content cannot be
+     * read or the handler throws an exception
+     */
+    public CompletableFuture<Long> read(Resource resource, int chunkSize, ChunkHandler handler) {
+        Verify.notNull(resource, "Resource must not be null");
+        Verify.verify(chunkSize > 0, "Chunk size must be positive: %s", chunkSize);
+        Verify.notNull(handler, "ChunkHandler must not be null");
+        CompletableFuture<Long> future = new CompletableFuture<Long>();
+        Path path = resolvePath(resource);
+        if (path != null) {
+            readFileChunks(path, chunkSize, handler, future);
+        } else {
+            readBlockingChunks(resource, chunkSize, handler, future);
+        }
+        return future;
+    }
+
+    /**
+     * Determine the file system path to read the given resource from asynchronously,
+     * or {@code null} if it has to be read through blocking calls.
+     */
+    private static Path resolvePath(Resource resource) {
+        if (!(resource instanceof FileSystemResource || resource instanceof PathResource)) {
+            return null;
+        }
+        try {
+            return resource.getFile().toPath();
+        } catch (IOException ex) {
+            // Not on the default file system
+            return null;
+        }
+    }
+
+    private AsynchronousFileChannel openChannel(Path path) throws IOException {
+        try {
+            return AsynchronousFileChannel.open(path, Collections.singleton(StandardOpenOption.READ),
+                    this.channelExecutor);
+        } catch (NoSuchFileException ex) {
+            throw new FileNotFoundException(ex.getMessage());
+        }
+    }
+
+    private void readFile(Path path, final CompletableFuture<ByteBuffer> future) {
+        final AsynchronousFileChannel channel;
+        final ByteBuffer buffer;
+        try {
+            channel = openChannel(path);
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+            return;
+        }
+        try {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE - 8) {
+                throw new IOException(path + " is too large to be read into a single buffer: " + size);
+            }
+            buffer = ByteBuffer.allocate((int) size);
+        } catch (IOException ex) {
+            closeQuietly(channel);
+            future.completeExceptionally(ex);
+            return;
+        }
+        channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0 || !buffer.hasRemaining()) {
+                    closeQuietly(channel);
+                    buffer.flip();
+                    future.complete(buffer);
+                } else {
+                    channel.read(buffer, buffer.position(), null, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment) {
+                closeQuietly(channel);
+                future.completeExceptionally(ex);
+            }
+        });
+    }
+
+    private void readFileChunks(Path path, int chunkSize, final ChunkHandler handler,
+                                final CompletableFuture<Long> future) {
+        final AsynchronousFileChannel channel;
+        try {
+            channel = openChannel(path);
+        } catch (IOException ex) {
+            future.completeExceptionally(ex);
+            return;
+        }
+        final byte[] array = BufferPool.acquireHeap(chunkSize);
+        // Pooled arrays may be larger than requested: slice so that clear() keeps chunkSize as the limit
+        final ByteBuffer buffer = ByteBuffer.wrap(array, 0, chunkSize).slice();
+        channel.read(buffer, 0, null, new CompletionHandler<Integer, Void>() {
+
+            private long position;
+
+            @Override
+            public void completed(Integer count, Void attachment) {
+                if (count < 0) {
+                    release();
+                    future.complete(this.position);
+                    return;
+                }
+                buffer.flip();
+                try {
+                    handler.onChunk(buffer);
+                } catch (Throwable ex) {
+                    failed(ex, attachment);
+                    return;
+                }
+                this.position += count;
+                buffer.clear();
+                channel.read(buffer, this.position, null, this);
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment) {
+                release();
+                future.completeExceptionally(ex);
+            }
+
+            private void release() {
+                closeQuietly(channel);
+                BufferPool.release(array);
+            }
+        });
+    }
+
+    private void readBlocking(final Resource resource, final CompletableFuture<ByteBuffer> future) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.complete(ByteBuffer.wrap(CopyUtils.copyToByteArray(resource.getInputStream())));
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                }
+            }
+        }, future);
+    }
+
+    private void readBlockingChunks(final Resource resource, final int chunkSize, final ChunkHandler handler,
+                                    final CompletableFuture<Long> future) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                byte[] array = BufferPool.acquireHeap(chunkSize);
+                try {
+                    ByteBuffer buffer = ByteBuffer.wrap(array, 0, chunkSize).slice();
+                    ReadableByteChannel channel = resource.readableChannel();
+                    try {
+                        long total = 0;
+                        int count;
+                        while ((count = channel.read(buffer)) >= 0) {
+                            if (count > 0) {
+                                buffer.flip();
+                                handler.onChunk(buffer);
+                                total += count;
+                                buffer.clear();
+                            }
+                        }
+                        future.complete(total);
+                    } finally {
+                        channel.close();
+                    }
+                } catch (Throwable ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    BufferPool.release(array);
+                }
+            }
+        }, future);
+    }
+
+    private void execute(Runnable task, CompletableFuture<?> future) {
+        try {
+            this.executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    /**
+     * Callback interface for processing resource content chunk by chunk.
+     *
+     * @see AsyncResourceReader#read(Resource, int, ChunkHandler)
+     */
+    public interface ChunkHandler {
+
+        /**
+         * Process the next chunk of content.
+         * <p>The buffer is reused for subsequent chunks: it must not be retained
+         * after this method returns, and its content must be copied if needed later.
+         *
+         * @param chunk a buffer holding the chunk between its position and limit
+         *
+         * @throws IOException if processing the chunk failed; aborts the read
+         */
+        void onChunk(ByteBuffer chunk) throws IOException;
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link OutputStream} that replaces a target file atomically and durably: content
+ * is written to a temporary file in the target's directory, forced to disk, and then
+ * renamed onto the target, followed by a sync of the directory.
+ * <p/>
+ * <p>Readers of the target observe either its previous or its complete new content,
+ * and after {@link #close()} returns the new content survives a crash. If writing
+ * fails, or the stream is {@linkplain #abort() aborted} before being closed, the target is
+ * left untouched. Note that closing commits whatever has been written so far; callers that
+ * need to discard partial content after an error must call {@link #abort()} instead.
+ * <p>Directory syncs are group-committed: concurrent writers to the same directory
+ * share a single sync covering all renames that completed before it started, so
+ * durable writes of many small files need far fewer directory syncs than writers.
+ * Each file's own content is still forced to disk separately on close.
+ *
+ * @see AtomicWritableResource#getAtomicOutputStream()
+ */
+public class AtomicFileOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final ConcurrentMap<Path, DirectorySync> directorySyncs =
+            new ConcurrentHashMap<Path, DirectorySync>();
+
+    private final Path target;
+
+    private final Path tempFile;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private boolean closed;
+
+    private List<Runnable> closeCallbacks;
+
+    /**
+     * Create a new {@code AtomicFileOutputStream} for the given target file,
+     * creating a temporary file next to it.
+     * <p>If the target exists, its POSIX permissions are copied onto the temporary
+     * file, as well as its owner and group where the current user may set them,
+     * so that the replacement keeps the target's access rights. A new target is
+     * created with the same default permissions as a {@link java.io.FileOutputStream}.
+     *
+     * @param target the file to replace on {@link #close()}; its parent directory must exist
+     *
+     * @throws IOException if the temporary file could not be created
+     */
+    public AtomicFileOutputStream(Path target) throws IOException {
+        Verify.notNull(target, "Target path must not be null");
+        Path absoluteTarget = target.toAbsolutePath();
+        Path directory = absoluteTarget.getParent();
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new FileNotFoundException(target + " (parent directory does not exist)");
+        }
+        this.target = absoluteTarget;
+        this.tempFile = createTempFile(directory, absoluteTarget.getFileName().toString());
+        try {
+            copyAttributes(absoluteTarget, this.tempFile);
+            this.channel = FileChannel.open(this.tempFile, StandardOpenOption.WRITE);
+        } catch (IOException ex) {
+            Files.deleteIfExists(this.tempFile);
+            throw ex;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        if (!this.buffer.hasRemaining()) {
+            flushBuffer();
+        }
+        this.buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if (len > this.buffer.remaining()) {
+            flushBuffer();
+            if (len >= this.buffer.capacity()) {
+                writeFully(ByteBuffer.wrap(b, off, len));
+                return;
+            }
+        }
+        this.buffer.put(b, off, len);
+    }
+
+    /**
+     * This implementation writes buffered content to the temporary file,
+     * without forcing it to disk; the target is only replaced on {@link #close()}.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        flushBuffer();
+    }
+
+    /**
+     * Force the written content to disk, atomically replace the target with it
+     * and sync the target's directory. Does nothing if already closed or aborted.
+     *
+     * @throws IOException if the content could not be committed; the target is
+     *                     left untouched in that case
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            boolean committed = false;
+            try {
+                flushBuffer();
+                // Content and size suffice: the rename is made durable by the directory sync
+                this.channel.force(false);
+                this.channel.close();
+                Files.move(this.tempFile, this.target, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                committed = true;
+            } finally {
+                if (!committed) {
+                    discard();
+                }
+            }
+            syncDirectory(this.target.getParent());
+        } finally {
+            runCloseCallbacks();
+        }
+    }
+
+    /**
+     * Discard the written content and leave the target untouched.
+     * Does nothing if already closed or aborted.
+     *
+     * @throws IOException if the temporary file could not be deleted
+     */
+    public void abort() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            discard();
+        } finally {
+            runCloseCallbacks();
+        }
+    }
+
+    /**
+     * Register a callback to run once this stream has been closed or aborted,
+     * whether or not its content was committed.
+     */
+    void addCloseCallback(Runnable callback) {
+        if (this.closeCallbacks == null) {
+            this.closeCallbacks = new ArrayList<Runnable>(1);
+        }
+        this.closeCallbacks.add(callback);
+    }
+
+    private void runCloseCallbacks() {
+        if (this.closeCallbacks != null) {
+            for (Runnable callback : this.closeCallbacks) {
+                callback.run();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (this.closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.buffer.position() > 0) {
+            this.buffer.flip();
+            writeFully(this.buffer);
+            this.buffer.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            this.channel.write(source);
+        }
+    }
+
+    private void discard() throws IOException {
+        try {
+            this.channel.close();
+        } finally {
+            Files.deleteIfExists(this.tempFile);
+        }
+    }
+
+    /**
+     * Create an empty, uniquely named file in the given directory. Unlike
+     * {@link Files#createTempFile}, this does not restrict the file to its owner.
+     */
+    private static Path createTempFile(Path directory, String targetName) throws IOException {
+        while (true) {
+            Path tempFile = directory.resolve("." + targetName + "." +
+                                                      Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(tempFile);
+            } catch (FileAlreadyExistsException ex) {
+                // Name clash with a concurrent writer: try another name
+            }
+        }
+    }
+
+    private static void copyAttributes(Path source, Path target) throws IOException {
+        PosixFileAttributeView sourceView = Files.getFileAttributeView(source, PosixFileAttributeView.class);
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (sourceView == null || targetView == null) {
+            return;
+        }
+        PosixFileAttributes attributes;
+        try {
+            attributes = sourceView.readAttributes();
+        } catch (NoSuchFileException ex) {
+            // New target: keep the default permissions
+            return;
+        }
+        try {
+            if (!attributes.group().equals(targetView.readAttributes().group())) {
+                targetView.setGroup(attributes.group());
+            }
+            if (!attributes.owner().equals(targetView.getOwner())) {
+                targetView.setOwner(attributes.owner());
+            }
+        } catch (IOException ex) {
+            // Changing owner or group requires privileges the current user may not have
+        }
+        targetView.setPermissions(attributes.permissions());
+    }
+
+    private static void syncDirectory(Path directory) throws IOException {
+        DirectorySync sync = directorySyncs.get(directory);
+        if (sync == null) {
+            sync = new DirectorySync(directory);
+            DirectorySync existing = directorySyncs.putIfAbsent(directory, sync);
+            if (existing != null) {
+                sync = existing;
+            }
+        }
+        sync.sync();
+    }
+
+    /**
+     * Group commit of syncs for a single directory: a caller either finds its
+     * rename covered by a sync that started after it, or becomes the leader
+     * that performs the next sync on behalf of all callers waiting so far.
+     */
+    private static final class DirectorySync {
+
+        private final Path directory;
+
+        private long requested;
+
+        private long completed;
+
+        private boolean syncing;
+
+        public DirectorySync(Path directory) {
+            this.directory = directory;
+        }
+
+        public void sync() throws IOException {
+            long covered;
+            synchronized (this) {
+                long ticket = ++this.requested;
+                while (true) {
+                    if (this.completed >= ticket) {
+                        return;
+                    }
+                    if (!this.syncing) {
+                        break;
+                    }
+                    try {
+                        wait();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("Interrupted while waiting for directory sync of " +
+                                                      this.directory);
+                    }
+                }
+                this.syncing = true;
+                covered = this.requested;
+            }
+            boolean success = false;
+            try {
+                forceDirectory(this.directory);
+                success = true;
+            } finally {
+                synchronized (this) {
+                    this.syncing = false;
+                    if (success) {
+                        this.completed = covered;
+                    }
+                    if (this.completed == this.requested) {
+                        directorySyncs.remove(this.directory, this);
+                    }
+                    notifyAll();
+                }
+            }
+        }
+
+        private static void forceDirectory(Path directory) throws IOException {
+            FileChannel channel;
+            try {
+                channel = FileChannel.open(directory, StandardOpenOption.READ);
+            } catch (NoSuchFileException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                // Directories cannot be opened for syncing on this platform (e.g. Windows)
+                return;
+            }
+            try {
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+
+/**
+ * Extended interface for a file-based resource that supports replacing its
+ * content atomically. Provides an {@link #getAtomicOutputStream() atomic
+ * OutputStream accessor}.
+ *
+ * @see AtomicFileOutputStream
+ * @see FileSystemResource
+ * @see PathResource
+ */
+public interface AtomicWritableResource extends WritableResource {
+
+    /**
+     * Return an {@link AtomicFileOutputStream} that replaces the content of the
+     * underlying file atomically and durably once closed: the new content is
+     * written to a temporary file, forced to disk and then swapped in, so that
+     * a crash never leaves the file partially written.
+     * <p>Unlike {@link #getOutputStream()}, the existing content remains
+     * visible until the stream is closed. Closing commits whatever has been
+     * written; call {@link AtomicFileOutputStream#abort()} instead to discard
+     * partial content after an error.
+     * <p>Every stream forces its own file to disk on close; only the sync of the
+     * containing directory is shared between concurrent writers.
+     *
+     * @throws IOException if the stream could not be opened
+     * @see #getOutputStream()
+     * @see AtomicFileOutputStream
+     */
+    AtomicFileOutputStream getAtomicOutputStream() throws IOException;
+
+}
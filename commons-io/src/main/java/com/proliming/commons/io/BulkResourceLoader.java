@@ -0,0 +1,261 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import com.proliming.commons.utils.BoundedTaskGroup;
+import com.proliming.commons.utils.CopyUtils;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Loads the content of many resources at once, resolving and reading them in
+ * parallel through a {@link ResourceLoader}, with a bounded number of reads in
+ * progress at a time.
+ * <p/>
+ * <p>Intended for startup code that otherwise reads hundreds or thousands of
+ * configuration and template resources one by one. Failing locations do not
+ * abort the load: their exceptions are collected in the {@link LoadResult},
+ * along with the content and the load time of every location.
+ * <pre class="code">
+ * BulkResourceLoader loader = new BulkResourceLoader(new DefaultResourceLoader());
+ * LoadResult&lt;String&gt; result = loader.loadStrings(locations, StandardCharsets.UTF_8);
+ * if (result.hasFailures()) {
+ *     ...
+ * }
+ * String content = result.getContents().get("classpath:config/app.properties");
+ * </pre>
+ */
+public class BulkResourceLoader {
+
+    private final ResourceLoader resourceLoader;
+
+    private final Executor executor;
+
+    private final int maxConcurrency;
+
+    /**
+     * Create a new {@code BulkResourceLoader} that reads on the shared
+     * {@linkplain BoundedTaskGroup#getBlockingIoExecutor() blocking I/O executor},
+     * with one read per executor thread in progress.
+     *
+     * @param resourceLoader the ResourceLoader to resolve locations with
+     */
+    public BulkResourceLoader(ResourceLoader resourceLoader) {
+        this(resourceLoader, BoundedTaskGroup.getBlockingIoExecutor(), BoundedTaskGroup.BLOCKING_IO_THREADS);
+    }
+
+    /**
+     * Create a new {@code BulkResourceLoader}.
+     *
+     * @param resourceLoader the ResourceLoader to resolve locations with
+     * @param executor       the executor to resolve and read resources on; reads
+     *                       rejected by the executor are run in the calling thread
+     * @param maxConcurrency the maximum number of reads in progress at a time
+     */
+    public BulkResourceLoader(ResourceLoader resourceLoader, Executor executor, int maxConcurrency) {
+        Verify.notNull(resourceLoader, "ResourceLoader must not be null");
+        Verify.notNull(executor, "Executor must not be null");
+        Verify.verify(maxConcurrency > 0, "maxConcurrency must be positive: %s", maxConcurrency);
+        this.resourceLoader = resourceLoader;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Return the ResourceLoader that this loader resolves locations with.
+     */
+    public ResourceLoader getResourceLoader() {
+        return this.resourceLoader;
+    }
+
+    /**
+     * Load the content of the given locations as byte arrays.
+     *
+     * @param locations the resource locations to load; duplicates are loaded once
+     *
+     * @return the loaded content, failures and timings, in location order
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting
+     */
+    public LoadResult<byte[]> loadBytes(Collection<String> locations) throws InterruptedIOException {
+        return load(locations, new ContentReader<byte[]>() {
+            @Override
+            public byte[] read(Resource resource) throws IOException {
+                return CopyUtils.copyToByteArray(resource.getInputStream());
+            }
+        });
+    }
+
+    /**
+     * Load the content of the given locations as Strings, decoded with the given charset.
+     *
+     * @param locations the resource locations to load; duplicates are loaded once
+     * @param charset   the charset to decode the content with
+     *
+     * @return the loaded content, failures and timings, in location order
+     *
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting
+     */
+    public LoadResult<String> loadStrings(Collection<String> locations, final Charset charset)
+            throws InterruptedIOException {
+        Verify.notNull(charset, "Charset must not be null");
+        return load(locations, new ContentReader<String>() {
+            @Override
+            public String read(Resource resource) throws IOException {
+                return new String(CopyUtils.copyToByteArray(resource.getInputStream()), charset);
+            }
+        });
+    }
+
+    private <T> LoadResult<T> load(Collection<String> locations, final ContentReader<T> reader)
+            throws InterruptedIOException {
+        Verify.notNull(locations, "Locations must not be null");
+        long start = System.nanoTime();
+        final List<String> distinctLocations = new ArrayList<String>(new LinkedHashSet<String>(locations));
+        int count = distinctLocations.size();
+        final List<T> contents = new ArrayList<T>(Collections.<T>nCopies(count, null));
+        final IOException[] failures = new IOException[count];
+        final long[] nanos = new long[count];
+        BoundedTaskGroup tasks = new BoundedTaskGroup(this.executor, this.maxConcurrency);
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                tasks.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        long taskStart = System.nanoTime();
+                        try {
+                            Resource resource = resourceLoader.getResource(distinctLocations.get(index));
+                            contents.set(index, reader.read(resource));
+                        } catch (IOException ex) {
+                            failures[index] = ex;
+                        } catch (RuntimeException ex) {
+                            failures[index] = new IOException(
+                                    "Failed to load resource [" + distinctLocations.get(index) + "]", ex);
+                        } finally {
+                            nanos[index] = System.nanoTime() - taskStart;
+                        }
+                    }
+                });
+            }
+            // Wait for all submitted reads, which also publishes their results
+            tasks.await();
+        } catch (InterruptedException ex) {
+            // The group has waited for the reads already running
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while loading resources");
+        }
+        Map<String, T> contentMap = new LinkedHashMap<String, T>();
+        Map<String, IOException> failureMap = new LinkedHashMap<String, IOException>();
+        Map<String, Long> nanoMap = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < count; i++) {
+            String location = distinctLocations.get(i);
+            if (failures[i] != null) {
+                failureMap.put(location, failures[i]);
+            } else {
+                contentMap.put(location, contents.get(i));
+            }
+            nanoMap.put(location, nanos[i]);
+        }
+        return new LoadResult<T>(contentMap, failureMap, nanoMap, (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Strategy for reading the content of a single resource.
+     */
+    private interface ContentReader<T> {
+
+        T read(Resource resource) throws IOException;
+    }
+
+    /**
+     * The outcome of a bulk load: the content of every successfully loaded location,
+     * the exception of every failed one, and the load time of each.
+     */
+    public static final class LoadResult<T> {
+
+        private final Map<String, T> contents;
+
+        private final Map<String, IOException> failures;
+
+        private final Map<String, Long> loadNanos;
+
+        private final long elapsedMillis;
+
+        private LoadResult(Map<String, T> contents, Map<String, IOException> failures,
+                           Map<String, Long> loadNanos, long elapsedMillis) {
+            this.contents = Collections.unmodifiableMap(contents);
+            this.failures = Collections.unmodifiableMap(failures);
+            this.loadNanos = Collections.unmodifiableMap(loadNanos);
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Return the content of all successfully loaded locations, in location order.
+         */
+        public Map<String, T> getContents() {
+            return this.contents;
+        }
+
+        /**
+         * Return the exceptions of all locations that failed to load, in location order.
+         */
+        public Map<String, IOException> getFailures() {
+            return this.failures;
+        }
+
+        /**
+         * Return whether any location failed to load.
+         */
+        public boolean hasFailures() {
+            return !this.failures.isEmpty();
+        }
+
+        /**
+         * Return the time in nanoseconds it took to resolve and read each location,
+         * including failed ones, in location order.
+         */
+        public Map<String, Long> getLoadNanos() {
+            return this.loadNanos;
+        }
+
+        /**
+         * Return the wall-clock time of the entire load, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "Loaded " + this.contents.size() + " resources (" + this.failures.size() + " failed) in " +
+                           this.elapsedMillis + " ms";
+        }
+    }
+
+}
@@ -19,26 +19,45 @@ package com.proliming.commons.io;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.util.Arrays;
 
 /**
- * {@link Resource} implementation for a given byte array.
+ * {@link Resource} implementation for a given byte array, or a range of it.
  * <p>Creates a {@link ByteArrayInputStream} for the given byte array.
  * <p/>
  * <p>Useful for loading content from any given byte array,
  * without having to resort to a single-use {@link InputStreamResource}.
  * Particularly useful for creating mail attachments from local content,
  * where JavaMail needs to be able to read the stream multiple times.
+ * <p>Many resources can be carved out of one large array through
+ * {@link #slice(int, int)} without copying. Equality and the hash code are
+ * based on the content; the hash code is computed once and cached, so the
+ * content must not be modified while the resource is used as a map key.
  *
  * @see java.io.ByteArrayInputStream
  * @see InputStreamResource
+ * @see ByteBufferResource
  */
 public class ByteArrayResource extends AbstractResource {
 
     private final byte[] byteArray;
 
+    private final int offset;
+
+    private final int length;
+
     private final String description;
 
+    /**
+     * Cached content hash code; 0 if not computed yet.
+     */
+    private int hash;
+
     /**
      * Create a new ByteArrayResource.
      *
@@ -55,18 +74,84 @@ public class ByteArrayResource extends AbstractResource {
      * @param description where the byte array comes from
      */
     public ByteArrayResource(byte[] byteArray, String description) {
-        if (byteArray == null) {
-            throw new IllegalArgumentException("Byte array must not be null");
+        this(byteArray, 0, checkByteArray(byteArray).length, description);
+    }
+
+    /**
+     * Create a new ByteArrayResource for a range of the given byte array,
+     * sharing the array instead of copying the range.
+     *
+     * @param byteArray the byte array to wrap
+     * @param offset    the offset of the range within the array
+     * @param length    the length of the range
+     */
+    public ByteArrayResource(byte[] byteArray, int offset, int length) {
+        this(byteArray, offset, length, "resource loaded from byte array");
+    }
+
+    /**
+     * Create a new ByteArrayResource for a range of the given byte array,
+     * sharing the array instead of copying the range.
+     *
+     * @param byteArray   the byte array to wrap
+     * @param offset      the offset of the range within the array
+     * @param length      the length of the range
+     * @param description where the byte array comes from
+     */
+    public ByteArrayResource(byte[] byteArray, int offset, int length, String description) {
+        checkByteArray(byteArray);
+        if (offset < 0 || length < 0 || offset > byteArray.length - length) {
+            throw new IllegalArgumentException(
+                    "Range [" + offset + ", " + offset + "+" + length + ") out of bounds for length " +
+                            byteArray.length);
         }
         this.byteArray = byteArray;
+        this.offset = offset;
+        this.length = length;
         this.description = (description != null ? description : "");
     }
 
+    private static byte[] checkByteArray(byte[] byteArray) {
+        if (byteArray == null) {
+            throw new IllegalArgumentException("Byte array must not be null");
+        }
+        return byteArray;
+    }
+
     /**
-     * Return the underlying byte array.
+     * Return the underlying byte array, or a copy of the wrapped range
+     * if this resource covers only part of the array.
+     *
+     * @see #asReadOnlyByteBuffer()
      */
     public final byte[] getByteArray() {
-        return this.byteArray;
+        if (this.offset == 0 && this.length == this.byteArray.length) {
+            return this.byteArray;
+        }
+        return Arrays.copyOfRange(this.byteArray, this.offset, this.offset + this.length);
+    }
+
+    /**
+     * Return a read-only {@link ByteBuffer} view of the content, positioned at zero,
+     * sharing the underlying array.
+     */
+    public ByteBuffer asReadOnlyByteBuffer() {
+        return ByteBuffer.wrap(this.byteArray, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Create a resource for a range of this resource's content, sharing
+     * the underlying array.
+     *
+     * @param offset the offset of the range within this resource's content
+     * @param length the length of the range
+     */
+    public ByteArrayResource slice(int offset, int length) {
+        if (offset < 0 || length < 0 || offset > this.length - length) {
+            throw new IllegalArgumentException(
+                    "Range [" + offset + ", " + offset + "+" + length + ") out of bounds for length " + this.length);
+        }
+        return new ByteArrayResource(this.byteArray, this.offset + offset, length, this.description);
     }
 
     /**
@@ -78,22 +163,31 @@ public class ByteArrayResource extends AbstractResource {
     }
 
     /**
-     * This implementation returns the length of the underlying byte array.
+     * This implementation returns the length of the wrapped range.
      */
     @Override
     public long contentLength() {
-        return this.byteArray.length;
+        return this.length;
     }
 
     /**
      * This implementation returns a ByteArrayInputStream for the
-     * underlying byte array.
+     * wrapped range of the underlying byte array.
      *
      * @see java.io.ByteArrayInputStream
      */
     @Override
     public InputStream getInputStream() throws IOException {
-        return new ByteArrayInputStream(this.byteArray);
+        return new ByteArrayInputStream(this.byteArray, this.offset, this.length);
+    }
+
+    /**
+     * This implementation returns a read-only {@link SeekableByteChannel}
+     * over the wrapped range of the underlying byte array.
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        return new ByteArrayChannel(this.byteArray, this.offset, this.length);
     }
 
     /**
@@ -106,24 +200,134 @@ public class ByteArrayResource extends AbstractResource {
     }
 
     /**
-     * This implementation compares the underlying byte array.
-     *
-     * @see java.util.Arrays#equals(byte[], byte[])
+     * This implementation compares the content of the wrapped ranges.
      */
     @Override
     public boolean equals(Object obj) {
-        return (obj == this ||
-                        (obj instanceof ByteArrayResource && Arrays
-                                .equals(((ByteArrayResource) obj).byteArray, this.byteArray)));
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ByteArrayResource)) {
+            return false;
+        }
+        ByteArrayResource other = (ByteArrayResource) obj;
+        if (this.length != other.length) {
+            return false;
+        }
+        int thisHash = this.hash;
+        int otherHash = other.hash;
+        if (thisHash != 0 && otherHash != 0 && thisHash != otherHash) {
+            return false;
+        }
+        for (int i = 0; i < this.length; i++) {
+            if (this.byteArray[this.offset + i] != other.byteArray[other.offset + i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * This implementation returns the hash code based on the
-     * underlying byte array.
+     * This implementation returns a hash code based on the content of the wrapped
+     * range, computed on first access and cached afterwards.
      */
     @Override
     public int hashCode() {
-        return (byte[].class.hashCode() * 29 * this.byteArray.length);
+        int hash = this.hash;
+        if (hash == 0) {
+            hash = 1;
+            for (int i = this.offset, end = this.offset + this.length; i < end; i++) {
+                hash = 31 * hash + this.byteArray[i];
+            }
+            // A computed hash of 0 would be recomputed on every call
+            hash = (hash != 0 ? hash : 1);
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Read-only {@link SeekableByteChannel} over a byte array range,
+     * supporting positional reads without copying the array.
+     */
+    private static class ByteArrayChannel implements SeekableByteChannel {
+
+        private final byte[] bytes;
+
+        private final int offset;
+
+        private final int length;
+
+        private int position;
+
+        private boolean open = true;
+
+        public ByteArrayChannel(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            int remaining = this.length - this.position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = Math.min(remaining, dst.remaining());
+            dst.put(this.bytes, this.offset + this.position, count);
+            this.position += count;
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return this.position;
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Position must not be negative");
+            }
+            this.position = (int) Math.min(newPosition, this.length);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return this.length;
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+        }
     }
 
 }
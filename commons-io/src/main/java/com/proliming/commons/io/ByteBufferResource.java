@@ -0,0 +1,260 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link Resource} implementation for the content of a {@link ByteBuffer},
+ * typically a direct or memory-mapped buffer holding data outside the heap.
+ * <p/>
+ * <p>The resource captures the buffer's remaining content at construction time;
+ * later changes to the passed-in buffer's position or limit do not affect it.
+ * Many resources can be carved out of one large buffer through {@link #slice(int, int)}
+ * without copying. Like {@link ByteArrayResource}, equality and the hash code are
+ * based on the content, and the hash code is cached.
+ *
+ * @see ByteArrayResource
+ */
+public class ByteBufferResource extends AbstractResource {
+
+    private final ByteBuffer buffer;
+
+    private final String description;
+
+    /**
+     * Cached content hash code; 0 if not computed yet.
+     */
+    private int hash;
+
+    /**
+     * Create a new ByteBufferResource for the remaining content of the given buffer.
+     *
+     * @param buffer the buffer to wrap
+     */
+    public ByteBufferResource(ByteBuffer buffer) {
+        this(buffer, "resource loaded from byte buffer");
+    }
+
+    /**
+     * Create a new ByteBufferResource for the remaining content of the given buffer.
+     *
+     * @param buffer      the buffer to wrap
+     * @param description where the buffer comes from
+     */
+    public ByteBufferResource(ByteBuffer buffer, String description) {
+        Verify.notNull(buffer, "ByteBuffer must not be null");
+        this.buffer = buffer.slice().asReadOnlyBuffer();
+        this.description = (description != null ? description : "");
+    }
+
+    /**
+     * Return a read-only {@link ByteBuffer} view of the content, positioned at zero,
+     * sharing the underlying memory.
+     */
+    public ByteBuffer asReadOnlyByteBuffer() {
+        return this.buffer.duplicate();
+    }
+
+    /**
+     * Create a resource for a range of this resource's content, sharing
+     * the underlying memory.
+     *
+     * @param offset the offset of the range within this resource's content
+     * @param length the length of the range
+     */
+    public ByteBufferResource slice(int offset, int length) {
+        int capacity = this.buffer.capacity();
+        if (offset < 0 || length < 0 || offset > capacity - length) {
+            throw new IllegalArgumentException(
+                    "Range [" + offset + ", " + offset + "+" + length + ") out of bounds for length " + capacity);
+        }
+        ByteBuffer view = this.buffer.duplicate();
+        view.position(offset).limit(offset + length);
+        return new ByteBufferResource(view, this.description);
+    }
+
+    /**
+     * This implementation always returns {@code true}.
+     */
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    /**
+     * This implementation returns the size of the wrapped content.
+     */
+    @Override
+    public long contentLength() {
+        return this.buffer.capacity();
+    }
+
+    /**
+     * This implementation returns an InputStream that reads directly
+     * from the underlying buffer.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return new ByteBufferInputStream(this.buffer.duplicate());
+    }
+
+    /**
+     * This implementation returns a read-only {@link SeekableByteChannel}
+     * over the underlying buffer.
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        return new ByteBufferChannel(this.buffer.duplicate());
+    }
+
+    /**
+     * This implementation returns a description that includes the passed-in
+     * {@code description}, if any.
+     */
+    @Override
+    public String getDescription() {
+        return "Byte buffer resource [" + this.description + "]";
+    }
+
+    /**
+     * This implementation compares the content of the underlying buffers.
+     *
+     * @see ByteBuffer#equals(Object)
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == this) {
+            return true;
+        }
+        if (!(obj instanceof ByteBufferResource)) {
+            return false;
+        }
+        ByteBufferResource other = (ByteBufferResource) obj;
+        int thisHash = this.hash;
+        int otherHash = other.hash;
+        if (thisHash != 0 && otherHash != 0 && thisHash != otherHash) {
+            return false;
+        }
+        return this.buffer.equals(other.buffer);
+    }
+
+    /**
+     * This implementation returns a hash code based on the content of the
+     * underlying buffer, computed on first access and cached afterwards.
+     */
+    @Override
+    public int hashCode() {
+        int hash = this.hash;
+        if (hash == 0) {
+            hash = 1;
+            for (int i = 0, end = this.buffer.capacity(); i < end; i++) {
+                hash = 31 * hash + this.buffer.get(i);
+            }
+            // A computed hash of 0 would be recomputed on every call
+            hash = (hash != 0 ? hash : 1);
+            this.hash = hash;
+        }
+        return hash;
+    }
+
+    /**
+     * Read-only {@link SeekableByteChannel} over a byte buffer,
+     * supporting positional reads without copying the buffer.
+     */
+    private static class ByteBufferChannel implements SeekableByteChannel {
+
+        private final ByteBuffer buffer;
+
+        private boolean open = true;
+
+        public ByteBufferChannel(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            ensureOpen();
+            if (!this.buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(this.buffer.remaining(), dst.remaining());
+            ByteBuffer source = this.buffer.duplicate();
+            source.limit(source.position() + count);
+            dst.put(source);
+            this.buffer.position(this.buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public long position() throws IOException {
+            ensureOpen();
+            return this.buffer.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            ensureOpen();
+            if (newPosition < 0) {
+                throw new IllegalArgumentException("Position must not be negative");
+            }
+            this.buffer.position((int) Math.min(newPosition, this.buffer.limit()));
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            ensureOpen();
+            return this.buffer.limit();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            throw new NonWritableChannelException();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        @Override
+        public void close() {
+            this.open = false;
+        }
+
+        private void ensureOpen() throws ClosedChannelException {
+            if (!this.open) {
+                throw new ClosedChannelException();
+            }
+        }
+    }
+
+}
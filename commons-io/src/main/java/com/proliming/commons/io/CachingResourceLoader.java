@@ -0,0 +1,677 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.proliming.commons.utils.ClassUtils;
+import com.proliming.commons.utils.Verify;
+import com.proliming.commons.utils.VerifyException;
+
+/**
+ * {@link ResourceLoader} decorator that caches the resources resolved by a
+ * target loader, together with their metadata.
+ * <p/>
+ * <p>Resources are kept in a size-bounded cache with least-recently-used eviction.
+ * Each cached resource memoizes {@link Resource#exists() existence}, readability,
+ * {@link Resource#contentLength() content length}, {@link Resource#lastModified()
+ * last-modified timestamp} and {@link Resource#getURL() URL}; all but the URL
+ * expire after a configurable time-to-live, after which they are fetched from the
+ * target resource again. Failures are never memoized. Cached entries can also be
+ * invalidated explicitly via {@link #invalidate(String)}, or automatically on every
+ * change reported by a {@link ResourceWatcher} passed to the constructor.
+ * <p>The returned resources are {@link CachedResource} decorators. They also implement
+ * the extended resource interfaces of the resource resolved by the target loader,
+ * such as {@link WritableResource}, {@link MappedResource} or {@link ContextResource},
+ * delegating those methods to it; writing through a {@code WritableResource} discards
+ * the memoized metadata when the stream or channel is opened and again when it is
+ * closed. Use {@link CachedResource#getTargetResource()} to access the
+ * resource resolved by the target loader.
+ *
+ * @see DefaultResourceLoader
+ */
+public class CachingResourceLoader implements ResourceLoader {
+
+    /**
+     * Default maximum number of cached resources.
+     */
+    public static final int DEFAULT_MAX_SIZE = 1024;
+
+    /**
+     * Default time-to-live of memoized metadata, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+    private final ResourceLoader targetLoader;
+
+    private final int maxSize;
+
+    private final long timeToLiveNanos;
+
+    private final ResourceWatcher watcher;
+
+    private final Map<String, CachedResource> resourceCache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong missCount = new AtomicLong();
+
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private final AtomicLong metadataHitCount = new AtomicLong();
+
+    private final AtomicLong metadataMissCount = new AtomicLong();
+
+    /**
+     * Create a new CachingResourceLoader with default size and time-to-live.
+     *
+     * @param targetLoader the ResourceLoader to resolve resources with
+     */
+    public CachingResourceLoader(ResourceLoader targetLoader) {
+        this(targetLoader, DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Create a new CachingResourceLoader.
+     *
+     * @param targetLoader the ResourceLoader to resolve resources with
+     * @param maxSize      the maximum number of cached resources
+     * @param timeToLive   the time-to-live of memoized metadata in milliseconds;
+     *                     0 disables memoization, a negative value lets metadata never expire
+     */
+    public CachingResourceLoader(ResourceLoader targetLoader, int maxSize, long timeToLive) {
+        this(targetLoader, maxSize, timeToLive, null);
+    }
+
+    /**
+     * Create a new CachingResourceLoader that watches the cached resources for changes.
+     * Every cached resource is registered with the given watcher for as long as it is
+     * cached; a reported change discards its memoized metadata.
+     *
+     * @param targetLoader the ResourceLoader to resolve resources with
+     * @param maxSize      the maximum number of cached resources
+     * @param timeToLive   the time-to-live of memoized metadata in milliseconds;
+     *                     0 disables memoization, a negative value lets metadata never expire
+     * @param watcher      the watcher to register cached resources with, or {@code null} for none
+     */
+    public CachingResourceLoader(ResourceLoader targetLoader, int maxSize, long timeToLive,
+                                 ResourceWatcher watcher) {
+        Verify.notNull(targetLoader, "Target ResourceLoader must not be null");
+        Verify.verify(maxSize > 0, "Max size must be positive");
+        this.targetLoader = targetLoader;
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = (timeToLive < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(timeToLive));
+        this.watcher = watcher;
+        this.resourceCache = new LinkedHashMap<String, CachedResource>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedResource> eldest) {
+                if (size() > CachingResourceLoader.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    unwatch(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Return the ResourceLoader that resources are resolved with.
+     */
+    public final ResourceLoader getTargetLoader() {
+        return this.targetLoader;
+    }
+
+    /**
+     * This implementation returns the cached resource for the given location,
+     * resolving it through the target loader on a cache miss.
+     */
+    @Override
+    public Resource getResource(String location) {
+        Verify.notNull(location, "Location must not be null");
+        synchronized (this.resourceCache) {
+            CachedResource cached = this.resourceCache.get(location);
+            if (cached != null) {
+                this.hitCount.incrementAndGet();
+                return cached;
+            }
+        }
+        this.missCount.incrementAndGet();
+        CachedResource resolved = createCachedResource(this.targetLoader.getResource(location));
+        synchronized (this.resourceCache) {
+            CachedResource cached = this.resourceCache.get(location);
+            if (cached != null) {
+                // Resolved concurrently by another thread
+                return cached;
+            }
+            this.resourceCache.put(location, resolved);
+        }
+        watch(location, resolved);
+        return resolved;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return this.targetLoader.getClassLoader();
+    }
+
+    /**
+     * Remove the resource for the given location from the cache,
+     * discarding its memoized metadata.
+     *
+     * @param location the resource location, as passed to {@link #getResource(String)}
+     */
+    public void invalidate(String location) {
+        CachedResource cached;
+        synchronized (this.resourceCache) {
+            cached = this.resourceCache.remove(location);
+        }
+        if (cached != null) {
+            unwatch(cached);
+            cached.invalidate();
+        }
+    }
+
+    /**
+     * Remove all resources from the cache.
+     */
+    public void clear() {
+        synchronized (this.resourceCache) {
+            for (CachedResource cached : this.resourceCache.values()) {
+                unwatch(cached);
+                cached.invalidate();
+            }
+            this.resourceCache.clear();
+        }
+    }
+
+    /**
+     * Return the number of currently cached resources.
+     */
+    public int size() {
+        synchronized (this.resourceCache) {
+            return this.resourceCache.size();
+        }
+    }
+
+    /**
+     * Return the number of {@link #getResource(String)} calls served from the cache.
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Return the number of {@link #getResource(String)} calls resolved through the target loader.
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Return the number of resources evicted because the cache exceeded its maximum size.
+     */
+    public long getEvictionCount() {
+        return this.evictionCount.get();
+    }
+
+    /**
+     * Return the number of metadata lookups served from memoized values.
+     */
+    public long getMetadataHitCount() {
+        return this.metadataHitCount.get();
+    }
+
+    /**
+     * Return the number of metadata lookups delegated to the target resources.
+     */
+    public long getMetadataMissCount() {
+        return this.metadataMissCount.get();
+    }
+
+    /**
+     * Decorate the given resource, passing its extended resource interfaces through.
+     * If these are not visible from a common ClassLoader, the decorator implements
+     * {@link CachedResource} only.
+     */
+    private CachedResource createCachedResource(Resource targetResource) {
+        MemoizingResource cached = new MemoizingResource(targetResource);
+        List<Class<?>> interfaces = new ArrayList<Class<?>>();
+        for (Class<?> ifc : ClassUtils.getAllInterfacesForClassAsSet(targetResource.getClass())) {
+            if (ifc != Resource.class && Resource.class.isAssignableFrom(ifc)) {
+                interfaces.add(ifc);
+            }
+        }
+        if (interfaces.isEmpty()) {
+            return cached;
+        }
+        interfaces.add(0, CachedResource.class);
+        Class<?>[] proxyInterfaces = interfaces.toArray(new Class<?>[interfaces.size()]);
+        ClassLoader[] candidates = {targetResource.getClass().getClassLoader(), CachedResource.class.getClassLoader()};
+        for (ClassLoader classLoader : candidates) {
+            if (isVisible(proxyInterfaces, classLoader)) {
+                try {
+                    return (CachedResource) Proxy.newProxyInstance(classLoader, proxyInterfaces,
+                            new CapabilityInvocationHandler(cached));
+                } catch (IllegalArgumentException ex) {
+                    // Non-public interface from another package - try the next ClassLoader
+                }
+            }
+        }
+        return cached;
+    }
+
+    /**
+     * Register the given newly cached resource with the watcher, if any. Outside the
+     * cache lock, since registering a resource that needs polling reads its metadata.
+     */
+    private void watch(String location, CachedResource cached) {
+        if (this.watcher == null) {
+            return;
+        }
+        try {
+            this.watcher.watch(cached.getTargetResource(), getMemoizingResource(cached));
+        } catch (IOException ex) {
+            // Not watchable - the memoized metadata only expires
+            return;
+        } catch (VerifyException ex) {
+            // Watcher closed - the memoized metadata only expires
+            return;
+        }
+        synchronized (this.resourceCache) {
+            if (this.resourceCache.get(location) == cached) {
+                return;
+            }
+        }
+        // Evicted or invalidated in the meantime
+        unwatch(cached);
+    }
+
+    private void unwatch(CachedResource cached) {
+        if (this.watcher != null) {
+            this.watcher.unwatch(cached.getTargetResource(), getMemoizingResource(cached));
+        }
+    }
+
+    private static MemoizingResource getMemoizingResource(CachedResource cached) {
+        if (cached instanceof MemoizingResource) {
+            return (MemoizingResource) cached;
+        }
+        return ((CapabilityInvocationHandler) Proxy.getInvocationHandler(cached)).cached;
+    }
+
+    private static boolean isVisible(Class<?>[] interfaces, ClassLoader classLoader) {
+        for (Class<?> ifc : interfaces) {
+            if (!ClassUtils.isVisible(ifc, classLoader)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@link Resource} decorator memoizing the metadata of a target resource,
+     * as returned by {@link CachingResourceLoader#getResource(String)}.
+     */
+    public interface CachedResource extends Resource {
+
+        /**
+         * Return the resource resolved by the target loader.
+         */
+        Resource getTargetResource();
+
+        /**
+         * Discard all memoized metadata of this resource.
+         */
+        void invalidate();
+    }
+
+    /**
+     * {@link CachedResource} implementation holding the memoized metadata.
+     */
+    private class MemoizingResource implements CachedResource, ResourceWatcher.ChangeListener {
+
+        private final Resource targetResource;
+
+        private volatile Memo<Boolean> exists;
+
+        private volatile Memo<Boolean> readable;
+
+        private volatile Memo<Long> contentLength;
+
+        private volatile Memo<Long> lastModified;
+
+        private volatile URL url;
+
+        MemoizingResource(Resource targetResource) {
+            Verify.notNull(targetResource, "Target Resource must not be null");
+            this.targetResource = targetResource;
+        }
+
+        @Override
+        public Resource getTargetResource() {
+            return this.targetResource;
+        }
+
+        @Override
+        public void invalidate() {
+            this.exists = null;
+            this.readable = null;
+            this.contentLength = null;
+            this.lastModified = null;
+            this.url = null;
+        }
+
+        @Override
+        public void resourceChanged(Resource resource) {
+            invalidate();
+        }
+
+        @Override
+        public boolean exists() {
+            Memo<Boolean> memo = this.exists;
+            if (isValid(memo)) {
+                return memo.value;
+            }
+            boolean value = this.targetResource.exists();
+            this.exists = new Memo<Boolean>(value, System.nanoTime());
+            return value;
+        }
+
+        @Override
+        public boolean isReadable() {
+            Memo<Boolean> memo = this.readable;
+            if (isValid(memo)) {
+                return memo.value;
+            }
+            boolean value = this.targetResource.isReadable();
+            this.readable = new Memo<Boolean>(value, System.nanoTime());
+            return value;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.targetResource.isOpen();
+        }
+
+        @Override
+        public ReadableByteChannel readableChannel() throws IOException {
+            return this.targetResource.readableChannel();
+        }
+
+        @Override
+        public URL getURL() throws IOException {
+            URL value = this.url;
+            if (value != null) {
+                metadataHitCount.incrementAndGet();
+                return value;
+            }
+            metadataMissCount.incrementAndGet();
+            value = this.targetResource.getURL();
+            this.url = value;
+            return value;
+        }
+
+        @Override
+        public URI getURI() throws IOException {
+            return this.targetResource.getURI();
+        }
+
+        @Override
+        public File getFile() throws IOException {
+            return this.targetResource.getFile();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            Memo<Long> memo = this.contentLength;
+            if (isValid(memo)) {
+                return memo.value;
+            }
+            long value = this.targetResource.contentLength();
+            this.contentLength = new Memo<Long>(value, System.nanoTime());
+            return value;
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            Memo<Long> memo = this.lastModified;
+            if (isValid(memo)) {
+                return memo.value;
+            }
+            long value = this.targetResource.lastModified();
+            this.lastModified = new Memo<Long>(value, System.nanoTime());
+            return value;
+        }
+
+        @Override
+        public Resource createRelative(String relativePath) throws IOException {
+            return this.targetResource.createRelative(relativePath);
+        }
+
+        @Override
+        public String getFileName() {
+            return this.targetResource.getFileName();
+        }
+
+        @Override
+        public String getDescription() {
+            return this.targetResource.getDescription();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return this.targetResource.getInputStream();
+        }
+
+        private boolean isValid(Memo<?> memo) {
+            if (memo != null && (timeToLiveNanos < 0 || System.nanoTime() - memo.createdAt < timeToLiveNanos)) {
+                metadataHitCount.incrementAndGet();
+                return true;
+            }
+            metadataMissCount.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * This implementation compares the target resources.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            return (obj == this ||
+                            (obj instanceof CachedResource &&
+                                     this.targetResource.equals(((CachedResource) obj).getTargetResource())));
+        }
+
+        /**
+         * This implementation returns the hash code of the target resource.
+         */
+        @Override
+        public int hashCode() {
+            return this.targetResource.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.targetResource.toString();
+        }
+    }
+
+    /**
+     * Invocation handler of decorators passing extended resource interfaces through:
+     * {@link CachedResource} methods go to the memoizing decorator, all others to the
+     * target resource. Streams and channels opened for writing discard the memoized
+     * metadata once closed.
+     */
+    private static final class CapabilityInvocationHandler implements InvocationHandler {
+
+        private static final Set<Method> cachedResourceMethods =
+                new HashSet<Method>(Arrays.asList(CachedResource.class.getMethods()));
+
+        private final MemoizingResource cached;
+
+        public CapabilityInvocationHandler(MemoizingResource cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class || cachedResourceMethods.contains(method)) {
+                return invokeOn(this.cached, method, args);
+            }
+            if (!WritableResource.class.isAssignableFrom(method.getDeclaringClass()) ||
+                    method.getName().equals("isWritable")) {
+                return invokeOn(this.cached.getTargetResource(), method, args);
+            }
+            // Content is about to change
+            this.cached.invalidate();
+            Object result = invokeOn(this.cached.getTargetResource(), method, args);
+            if (result instanceof AtomicFileOutputStream) {
+                ((AtomicFileOutputStream) result).addCloseCallback(new Runnable() {
+                    @Override
+                    public void run() {
+                        cached.invalidate();
+                    }
+                });
+            } else if (result instanceof OutputStream && method.getReturnType() == OutputStream.class) {
+                result = new InvalidatingOutputStream((OutputStream) result, this.cached);
+            } else if (result instanceof WritableByteChannel &&
+                    method.getReturnType() == WritableByteChannel.class) {
+                result = new InvalidatingChannel((WritableByteChannel) result, this.cached);
+            }
+            return result;
+        }
+
+        private static Object invokeOn(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getTargetException();
+            }
+        }
+    }
+
+    /**
+     * OutputStream discarding the memoized metadata of a resource once closed.
+     */
+    private static final class InvalidatingOutputStream extends OutputStream {
+
+        private final OutputStream target;
+
+        private final CachedResource cached;
+
+        public InvalidatingOutputStream(OutputStream target, CachedResource cached) {
+            this.target = target;
+            this.cached = cached;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.target.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.target.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.target.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.target.close();
+            } finally {
+                this.cached.invalidate();
+            }
+        }
+    }
+
+    /**
+     * WritableByteChannel discarding the memoized metadata of a resource once closed.
+     */
+    private static final class InvalidatingChannel implements WritableByteChannel {
+
+        private final WritableByteChannel target;
+
+        private final CachedResource cached;
+
+        public InvalidatingChannel(WritableByteChannel target, CachedResource cached) {
+            this.target = target;
+            this.cached = cached;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return this.target.write(src);
+        }
+
+        @Override
+        public boolean isOpen() {
+            return this.target.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                this.target.close();
+            } finally {
+                this.cached.invalidate();
+            }
+        }
+    }
+
+    /**
+     * Memoized metadata value with its creation time, in {@link System#nanoTime()} terms.
+     */
+    private static final class Memo<T> {
+
+        private final T value;
+
+        private final long createdAt;
+
+        public Memo(T value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link UrlResource} that serves HTTP(S) URLs through an {@link HttpResourceCache},
+ * storing response bodies on disk and revalidating them with conditional requests.
+ * <p/>
+ * <p>{@link #exists()}, {@link #contentLength()} and {@link #lastModified()} share
+ * a single cached response instead of issuing a HEAD request each. URLs with other
+ * protocols are accessed like a plain {@code UrlResource}.
+ *
+ * @see HttpResourceCache
+ */
+public class CachingUrlResource extends UrlResource {
+
+    private final URL url;
+
+    private final HttpResourceCache cache;
+
+    /**
+     * Create a new {@code CachingUrlResource} for the given URL.
+     *
+     * @param url   a URL
+     * @param cache the cache to serve HTTP responses from
+     */
+    public CachingUrlResource(URL url, HttpResourceCache cache) {
+        super(url);
+        Verify.notNull(cache, "HttpResourceCache must not be null");
+        this.url = url;
+        this.cache = cache;
+    }
+
+    /**
+     * This implementation serves the body from the cache, revalidating it
+     * with the server once the cache entry's time-to-live has passed.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!isHttpURL()) {
+            return super.getInputStream();
+        }
+        return this.cache.getInputStream(this.url, this);
+    }
+
+    @Override
+    public boolean exists() {
+        if (!isHttpURL()) {
+            return super.exists();
+        }
+        try {
+            return this.cache.getMetadata(this.url, this).exists;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        if (!isHttpURL()) {
+            return super.contentLength();
+        }
+        HttpResourceCache.Entry entry = this.cache.getMetadata(this.url, this);
+        if (!entry.exists) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return entry.contentLength;
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        if (!isHttpURL()) {
+            return super.lastModified();
+        }
+        HttpResourceCache.Entry entry = this.cache.getMetadata(this.url, this);
+        if (!entry.exists) {
+            throw new FileNotFoundException(getDescription() + " does not exist");
+        }
+        return entry.lastModified;
+    }
+
+    /**
+     * This implementation creates a {@code CachingUrlResource} backed by the
+     * same cache, applying the given path relative to the underlying URL.
+     */
+    @Override
+    public Resource createRelative(String relativePath) throws MalformedURLException {
+        if (relativePath.startsWith("/")) {
+            relativePath = relativePath.substring(1);
+        }
+        return new CachingUrlResource(new URL(this.url, relativePath), this.cache);
+    }
+
+    private boolean isHttpURL() {
+        String protocol = this.url.getProtocol();
+        return ("http".equals(protocol) || "https".equals(protocol));
+    }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+/**
+ * Mutable {@link CharSequence} view onto a range of a {@code char} array,
+ * re-pointed for every record handed out by {@link RecordReader} and
+ * {@link MappedLineSpliterator} instead of allocating a String per record.
+ */
+final class CharArraySequence implements CharSequence {
+
+    private char[] chars;
+
+    private int offset;
+
+    private int length;
+
+    CharArraySequence() {
+        this.chars = new char[0];
+    }
+
+    void set(char[] chars, int offset, int length) {
+        this.chars = chars;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", length: " + this.length);
+        }
+        return this.chars[this.offset + index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of length " + this.length);
+        }
+        return new String(this.chars, this.offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.chars, this.offset, this.length);
+    }
+
+}
@@ -0,0 +1,339 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.proliming.commons.utils.AntPathMatcher;
+import com.proliming.commons.utils.ResourceUtils;
+import com.proliming.commons.utils.StringUtils;
+
+/**
+ * Immutable index of all file entries in the jar files and directories of a class path,
+ * backing {@link IndexedResourcePatternResolver}.
+ * <p/>
+ * <p>Entries are kept as sorted path arrays per class path root, so that all entries
+ * below the static prefix of a pattern are found through binary search. The entries of
+ * jar roots can be persisted to an index file and are reused on later builds as long as
+ * the jar file's size and last-modified timestamp are unchanged; directory roots are
+ * always scanned, since their content changes without reliably touching the root.
+ */
+final class ClassPathIndex {
+
+    private static final int INDEX_FILE_MAGIC = 0x43504958;
+
+    private static final int INDEX_FILE_VERSION = 1;
+
+    private final List<Root> roots;
+
+    private ClassPathIndex(List<Root> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Build the index for the class path of the given ClassLoader and its parents.
+     *
+     * @param classLoader the ClassLoader whose class path to index
+     * @param indexFile   the file to load persisted jar entries from and store them to,
+     *                    or {@code null} for no persistence; failing to store them
+     *                    leaves the returned index unaffected
+     *
+     * @throws IOException if a class path root cannot be read
+     */
+    static ClassPathIndex build(ClassLoader classLoader, File indexFile) throws IOException {
+        Map<String, Root> persisted = readIndexFile(indexFile);
+        List<Root> roots = new ArrayList<Root>();
+        boolean modified = false;
+        int jarCount = 0;
+        for (File rootFile : determineRootFiles(classLoader)) {
+            if (rootFile.isDirectory()) {
+                roots.add(scanDirectory(rootFile));
+            } else if (rootFile.isFile()) {
+                jarCount++;
+                Root root = persisted.get(rootFile.getAbsolutePath());
+                if (root == null || root.lastModified != rootFile.lastModified() || root.length != rootFile.length()) {
+                    root = scanJar(rootFile);
+                    modified = true;
+                }
+                roots.add(root);
+            }
+        }
+        if (indexFile != null && (modified || jarCount != persisted.size())) {
+            try {
+                writeIndexFile(indexFile, roots);
+            } catch (IOException ex) {
+                // Unwritable index file - persisting the index is an optimization only
+            }
+        }
+        return new ClassPathIndex(roots);
+    }
+
+    /**
+     * Collect resources for all indexed entries matching the given pattern.
+     *
+     * @param pattern       the Ant-style pattern, relative to the class path roots
+     * @param matcher       the matcher to apply
+     * @param firstRootOnly whether to stop after the first class path root, in class
+     *                      path order, that has matching entries
+     * @param result        the collection to add matching resources to
+     *
+     * @throws IOException if a resource handle cannot be created
+     */
+    void findResources(String pattern, AntPathMatcher matcher, boolean firstRootOnly, Collection<Resource> result)
+            throws IOException {
+        String prefix = matcher.getStaticPrefix(pattern);
+        for (Root root : this.roots) {
+            String[] entries = root.entries;
+            int index = Arrays.binarySearch(entries, prefix);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            boolean matched = false;
+            for (; index < entries.length && entries[index].startsWith(prefix); index++) {
+                if (matcher.match(pattern, entries[index])) {
+                    result.add(root.createResource(entries[index]));
+                    matched = true;
+                }
+            }
+            if (matched && firstRootOnly) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Determine the class path roots of the given ClassLoader and its parents,
+     * parents first, following class loader delegation order.
+     */
+    private static Set<File> determineRootFiles(ClassLoader classLoader) {
+        List<ClassLoader> loaders = new ArrayList<ClassLoader>();
+        for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+            loaders.add(0, loader);
+        }
+        ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+        Set<File> rootFiles = new LinkedHashSet<File>();
+        for (ClassLoader loader : loaders) {
+            if (loader instanceof URLClassLoader) {
+                for (URL url : ((URLClassLoader) loader).getURLs()) {
+                    if (ResourceUtils.isFileURL(url)) {
+                        try {
+                            rootFiles.add(ResourceUtils.getFile(url).getAbsoluteFile().toPath().normalize().toFile());
+                        } catch (IOException ex) {
+                            // Not resolvable in the file system - skip it
+                        }
+                    }
+                }
+            } else if (loader == systemLoader) {
+                // The application class loader is no URLClassLoader on newer JDKs
+                String classPath = System.getProperty("java.class.path", "");
+                for (String element : StringUtils.tokenizeToStringArray(classPath, File.pathSeparator)) {
+                    rootFiles.add(new File(element).getAbsoluteFile().toPath().normalize().toFile());
+                }
+            }
+        }
+        return rootFiles;
+    }
+
+    private static Root scanDirectory(final File directory) throws IOException {
+        final Path rootPath = directory.toPath();
+        final List<String> entries = new ArrayList<String>();
+        Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    entries.add(rootPath.relativize(file).toString().replace(File.separatorChar, '/'));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                // Unreadable entry - skip it
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return new Root(directory, false, directory.lastModified(), 0, sort(entries));
+    }
+
+    private static Root scanJar(File jarFile) throws IOException {
+        List<String> entries = new ArrayList<String>();
+        ZipFile zipFile = new ZipFile(jarFile);
+        try {
+            Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+            while (zipEntries.hasMoreElements()) {
+                ZipEntry entry = zipEntries.nextElement();
+                if (!entry.isDirectory()) {
+                    entries.add(entry.getName());
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+        return new Root(jarFile, true, jarFile.lastModified(), jarFile.length(), sort(entries));
+    }
+
+    private static String[] sort(List<String> entries) {
+        String[] sorted = entries.toArray(new String[entries.size()]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static Map<String, Root> readIndexFile(File indexFile) {
+        Map<String, Root> roots = new HashMap<String, Root>();
+        if (indexFile == null || !indexFile.isFile()) {
+            return roots;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            try {
+                if (in.readInt() != INDEX_FILE_MAGIC || in.readInt() != INDEX_FILE_VERSION) {
+                    return roots;
+                }
+                // Every root and entry occupies at least two bytes, which bounds
+                // the counts of a corrupt file by its length
+                long maxCount = indexFile.length() / 2;
+                int rootCount = readCount(in, maxCount);
+                for (int i = 0; i < rootCount; i++) {
+                    File file = new File(in.readUTF());
+                    long lastModified = in.readLong();
+                    long length = in.readLong();
+                    String[] entries = new String[readCount(in, maxCount)];
+                    for (int j = 0; j < entries.length; j++) {
+                        entries[j] = in.readUTF();
+                    }
+                    roots.put(file.getAbsolutePath(), new Root(file, true, lastModified, length, entries));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException ex) {
+            // Unreadable or corrupt index file - rebuild from scratch
+            roots.clear();
+        } catch (RuntimeException ex) {
+            // Corrupt index file - rebuild from scratch
+            roots.clear();
+        }
+        return roots;
+    }
+
+    private static int readCount(DataInputStream in, long maxCount) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > maxCount) {
+            throw new IOException("Corrupt index file: invalid count " + count);
+        }
+        return count;
+    }
+
+    private static void writeIndexFile(File indexFile, List<Root> roots) throws IOException {
+        List<Root> jarRoots = new ArrayList<Root>();
+        for (Root root : roots) {
+            if (root.jar) {
+                jarRoots.add(root);
+            }
+        }
+        File parent = indexFile.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        File tempFile = File.createTempFile(indexFile.getName(), ".tmp", parent);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(INDEX_FILE_MAGIC);
+                out.writeInt(INDEX_FILE_VERSION);
+                out.writeInt(jarRoots.size());
+                for (Root root : jarRoots) {
+                    out.writeUTF(root.file.getAbsolutePath());
+                    out.writeLong(root.lastModified);
+                    out.writeLong(root.length);
+                    out.writeInt(root.entries.length);
+                    for (String entry : root.entries) {
+                        out.writeUTF(entry);
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * A single class path root: a jar file or a directory, with its sorted entries.
+     */
+    private static final class Root {
+
+        private final File file;
+
+        private final boolean jar;
+
+        private final long lastModified;
+
+        private final long length;
+
+        private final String[] entries;
+
+        private final String jarUrlPrefix;
+
+        public Root(File file, boolean jar, long lastModified, long length, String[] entries) {
+            this.file = file;
+            this.jar = jar;
+            this.lastModified = lastModified;
+            this.length = length;
+            this.entries = entries;
+            this.jarUrlPrefix = (jar ? ResourceUtils.JAR_URL_PREFIX + file.toURI() + ResourceUtils.JAR_URL_SEPARATOR
+                    : null);
+        }
+
+        public Resource createResource(String entry) throws IOException {
+            if (this.jar) {
+                return new UrlResource(new URL(this.jarUrlPrefix + entry));
+            }
+            return new FileSystemResource(new File(this.file, entry));
+        }
+    }
+
+}
@@ -20,10 +20,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 
 import com.google.common.base.Preconditions;
 import com.google.common.io.Files;
 import com.proliming.commons.utils.ClassUtils;
+import com.proliming.commons.utils.ResourceUtils;
 import com.proliming.commons.utils.StringUtils;
 
 /**
@@ -45,6 +47,8 @@ public class ClassPathResource extends AbstractFileResolvingResource {
 
     private Class<?> cls;
 
+    private volatile URL jarEntryURL;
+
     /**
      * Create a new {@code ClassPathResource} for {@code ClassLoader} usage.
      * A leading slash will be removed, as the ClassLoader resource access
@@ -134,7 +138,7 @@ public class ClassPathResource extends AbstractFileResolvingResource {
      */
     @Override
     public boolean exists() {
-        return (resolveURL() != null);
+        return (rememberJarURL(resolveURL()) != null);
     }
 
     /**
@@ -154,12 +158,35 @@ public class ClassPathResource extends AbstractFileResolvingResource {
 
     /**
      * This implementation opens an InputStream for the given class path resource.
+     * <p>If the shared {@link JarFileCache} is enabled, the resource is resolved to
+     * its URL - just like {@code ClassLoader.getResourceAsStream} does internally -
+     * and resources in jar files are read through the cache. All other resources are
+     * read through the URL, with the {@code useCaches} flag set to {@code false}.
      *
      * @see java.lang.ClassLoader#getResourceAsStream(String)
      * @see java.lang.Class#getResourceAsStream(String)
      */
     @Override
     public InputStream getInputStream() throws IOException {
+        JarFileCache jarFileCache = JarFileCache.getSharedInstance();
+        if (jarFileCache != null) {
+            URL url = this.jarEntryURL;
+            if (url == null) {
+                url = rememberJarURL(resolveURL());
+                if (url == null) {
+                    throw new FileNotFoundException(getDescription() + " cannot be opened because it does not exist");
+                }
+            }
+            if (ResourceUtils.URL_PROTOCOL_JAR.equals(url.getProtocol())) {
+                InputStream is = jarFileCache.getInputStream(url);
+                if (is != null) {
+                    return is;
+                }
+            }
+            URLConnection con = url.openConnection();
+            ResourceUtils.useCachesIfNecessary(con);
+            return con.getInputStream();
+        }
         InputStream is;
         if (this.cls != null) {
             is = this.cls.getResourceAsStream(this.path);
@@ -183,13 +210,23 @@ public class ClassPathResource extends AbstractFileResolvingResource {
      */
     @Override
     public URL getURL() throws IOException {
-        URL url = resolveURL();
+        URL url = rememberJarURL(resolveURL());
         if (url == null) {
             throw new FileNotFoundException(getDescription() + " cannot be resolved to URL because it does not exist");
         }
         return url;
     }
 
+    /**
+     * Remember the given URL for reading through the {@link JarFileCache} if it is a jar URL.
+     */
+    private URL rememberJarURL(URL url) {
+        if (url != null && ResourceUtils.URL_PROTOCOL_JAR.equals(url.getProtocol())) {
+            this.jarEntryURL = url;
+        }
+        return url;
+    }
+
     /**
      * This implementation creates a ClassPathResource, applying the given path
      * relative to the path of the underlying resource of this descriptor.
@@ -0,0 +1,577 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import com.proliming.commons.utils.BufferPool;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link Resource} decorator that transparently decompresses the content
+ * of the target resource.
+ * <p/>
+ * <p>The compression format is detected from the magic bytes at the start of
+ * the content: gzip (including concatenated gzip members) and zlib-wrapped deflate
+ * content is decompressed in streaming fashion, using {@link Inflater Inflaters}
+ * pooled across streams; content in any other format is passed through unchanged.
+ * Zstandard content is recognized but rejected with an IOException, since the JDK
+ * provides no decoder for it.
+ * <p>{@link #contentLength()} decompresses the content to determine its length, since
+ * the size field of a gzip trailer only covers its own member, modulo 2^32, and gzip
+ * content may consist of concatenated members, as written by {@code bgzip} or {@code cat}.
+ * If the content is known to be a single gzip member of less than 4 GB, the size can
+ * be read from the trailer instead: see {@link #CompressedResource(Resource, boolean)}.
+ * If the target is a {@link MappedResource}, compressed content is read from the
+ * memory mapping instead of through a file stream.
+ * <p>All other methods, such as {@link #lastModified()} and {@link #getFile()},
+ * refer to the target resource.
+ */
+public class CompressedResource extends AbstractResource {
+
+    private static final int MAGIC_LENGTH = 4;
+
+    private static final int MAX_POOLED_INFLATERS = 16;
+
+    /**
+     * Minimum size of a gzip member: a 10-byte header and an 8-byte trailer.
+     */
+    private static final int MIN_GZIP_MEMBER_LENGTH = 18;
+
+    private static final InflaterPool gzipInflaters = new InflaterPool(true);
+
+    private static final InflaterPool zlibInflaters = new InflaterPool(false);
+
+    private final Resource target;
+
+    private final boolean singleGzipMember;
+
+    /**
+     * Create a new {@code CompressedResource} for the given target resource.
+     *
+     * @param target the resource holding the compressed content
+     */
+    public CompressedResource(Resource target) {
+        this(target, false);
+    }
+
+    /**
+     * Create a new {@code CompressedResource} for the given target resource.
+     *
+     * @param target           the resource holding the compressed content
+     * @param singleGzipMember whether gzip content is known to consist of a single member
+     *                         of less than 4 GB uncompressed, so that {@link #contentLength()}
+     *                         may read the size from the gzip trailer of a file-backed target;
+     *                         the assertion is not verified
+     */
+    public CompressedResource(Resource target, boolean singleGzipMember) {
+        Verify.notNull(target, "Target resource must not be null");
+        this.target = target;
+        this.singleGzipMember = singleGzipMember;
+    }
+
+    /**
+     * Return the resource holding the compressed content.
+     */
+    public final Resource getTargetResource() {
+        return this.target;
+    }
+
+    /**
+     * This implementation returns a stream that decompresses the target's
+     * content according to the detected compression format.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        PushbackInputStream in = new PushbackInputStream(openCompressedStream(), MAGIC_LENGTH);
+        try {
+            byte[] magic = new byte[MAGIC_LENGTH];
+            int count = readFully(in, magic);
+            in.unread(magic, 0, count);
+            Format format = Format.detect(magic, count);
+            if (format == Format.GZIP) {
+                return new InflatingInputStream(in, gzipInflaters);
+            } else if (format == Format.ZLIB) {
+                return new InflatingInputStream(in, zlibInflaters);
+            } else if (format == Format.ZSTD) {
+                throw new IOException("Zstandard compression is not supported: " + this.target.getDescription());
+            }
+            return in;
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            in.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * This implementation returns the uncompressed content length: for uncompressed content
+     * the target's length, for gzip content asserted to be a single member taken from the
+     * trailer if the target is backed by a file, and otherwise determined by decompressing.
+     */
+    @Override
+    public long contentLength() throws IOException {
+        byte[] magic = new byte[MAGIC_LENGTH];
+        InputStream in = openCompressedStream();
+        int count;
+        try {
+            count = readFully(in, magic);
+        } finally {
+            in.close();
+        }
+        Format format = Format.detect(magic, count);
+        if (format == Format.NONE) {
+            return this.target.contentLength();
+        }
+        if (format == Format.GZIP && this.singleGzipMember) {
+            long size = readGzipTrailerSize();
+            if (size >= 0) {
+                return size;
+            }
+        }
+        return readContentLength();
+    }
+
+    @Override
+    public boolean exists() {
+        return this.target.exists();
+    }
+
+    @Override
+    public boolean isReadable() {
+        return this.target.isReadable();
+    }
+
+    @Override
+    public URL getURL() throws IOException {
+        return this.target.getURL();
+    }
+
+    @Override
+    public URI getURI() throws IOException {
+        return this.target.getURI();
+    }
+
+    @Override
+    public File getFile() throws IOException {
+        return this.target.getFile();
+    }
+
+    @Override
+    public long lastModified() throws IOException {
+        return this.target.lastModified();
+    }
+
+    /**
+     * This implementation decorates the relative resource of the target as well,
+     * without asserting that it is a single gzip member.
+     */
+    @Override
+    public Resource createRelative(String relativePath) throws IOException {
+        return new CompressedResource(this.target.createRelative(relativePath));
+    }
+
+    @Override
+    public String getFileName() {
+        return this.target.getFileName();
+    }
+
+    @Override
+    public String getDescription() {
+        return "Compressed resource [" + this.target.getDescription() + "]";
+    }
+
+    /**
+     * This implementation compares the target resources.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return (obj == this ||
+                        (obj instanceof CompressedResource && ((CompressedResource) obj).target.equals(this.target)));
+    }
+
+    /**
+     * This implementation returns the target resource's hash code.
+     */
+    @Override
+    public int hashCode() {
+        return this.target.hashCode();
+    }
+
+    /**
+     * Open a stream over the compressed content, reading from the memory
+     * mapping if the target supports it.
+     */
+    private InputStream openCompressedStream() throws IOException {
+        if (this.target instanceof MappedResource) {
+            MappedByteBuffer[] regions;
+            try {
+                regions = ((MappedResource) this.target).getMappedRegions();
+            } catch (IOException ex) {
+                // Not mappable after all, e.g. a special file - read it as a stream
+                return this.target.getInputStream();
+            }
+            if (regions.length == 1) {
+                return new ByteBufferInputStream(regions[0]);
+            }
+            List<InputStream> streams = new ArrayList<InputStream>(regions.length);
+            for (MappedByteBuffer region : regions) {
+                streams.add(new ByteBufferInputStream(region));
+            }
+            return new SequenceInputStream(Collections.enumeration(streams));
+        }
+        return this.target.getInputStream();
+    }
+
+    /**
+     * Read the uncompressed size from the gzip trailer of a file-backed target
+     * asserted to hold a single gzip member.
+     *
+     * @return the size, or -1 if the target is not backed by a file
+     */
+    private long readGzipTrailerSize() throws IOException {
+        if (this.target instanceof MappedResource) {
+            long length = this.target.contentLength();
+            if (length < MIN_GZIP_MEMBER_LENGTH) {
+                return -1;
+            }
+            MappedByteBuffer trailer = ((MappedResource) this.target).getMappedRegion(length - 4, 4);
+            return trailer.order(ByteOrder.LITTLE_ENDIAN).getInt(0) & 0xFFFFFFFFL;
+        }
+        File file;
+        try {
+            file = this.target.getFile();
+        } catch (IOException ex) {
+            return -1;
+        }
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            long length = raf.length();
+            if (length < MIN_GZIP_MEMBER_LENGTH) {
+                return -1;
+            }
+            raf.seek(length - 4);
+            return Integer.reverseBytes(raf.readInt()) & 0xFFFFFFFFL;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] bytes) throws IOException {
+        int count = 0;
+        while (count < bytes.length) {
+            int read = in.read(bytes, count, bytes.length - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return count;
+    }
+
+    /**
+     * Compression formats recognized by their magic bytes.
+     */
+    private enum Format {
+
+        NONE, GZIP, ZLIB, ZSTD;
+
+        public static Format detect(byte[] magic, int count) {
+            if (count >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+                return GZIP;
+            }
+            if (count >= 2 && (magic[0] & 0xFF) == 0x78 && (magic[1] & 0x20) == 0 &&
+                        ((0x78 << 8) | (magic[1] & 0xFF)) % 31 == 0) {
+                // Deflate with a 32K window, as written by all common zlib encoders,
+                // no preset dictionary and valid header check bits
+                return ZLIB;
+            }
+            if (count >= 4 && (magic[0] & 0xFF) == 0x28 && (magic[1] & 0xFF) == 0xB5 &&
+                        (magic[2] & 0xFF) == 0x2F && (magic[3] & 0xFF) == 0xFD) {
+                return ZSTD;
+            }
+            return NONE;
+        }
+    }
+
+    /**
+     * Bounded pool of {@link Inflater Inflaters} of one kind, avoiding the native
+     * allocation and setup of a fresh Inflater per stream.
+     */
+    private static final class InflaterPool {
+
+        private final boolean nowrap;
+
+        private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+
+        private final AtomicInteger size = new AtomicInteger();
+
+        public InflaterPool(boolean nowrap) {
+            this.nowrap = nowrap;
+        }
+
+        public boolean isGzip() {
+            return this.nowrap;
+        }
+
+        public Inflater acquire() {
+            Inflater inflater = this.inflaters.poll();
+            if (inflater == null) {
+                return new Inflater(this.nowrap);
+            }
+            this.size.decrementAndGet();
+            return inflater;
+        }
+
+        public void release(Inflater inflater) {
+            inflater.reset();
+            if (this.size.incrementAndGet() <= MAX_POOLED_INFLATERS) {
+                this.inflaters.offer(inflater);
+            } else {
+                this.size.decrementAndGet();
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Stream that inflates gzip or zlib content with a pooled Inflater. Gzip headers
+     * and trailers are parsed here, with the CRC and size of every member verified.
+     */
+    private static final class InflatingInputStream extends InputStream {
+
+        private static final int FHCRC = 2;
+
+        private static final int FEXTRA = 4;
+
+        private static final int FNAME = 8;
+
+        private static final int FCOMMENT = 16;
+
+        private final InputStream in;
+
+        private final InflaterPool pool;
+
+        private final boolean gzip;
+
+        private final CRC32 crc = new CRC32();
+
+        private final byte[] single = new byte[1];
+
+        private Inflater inflater;
+
+        private byte[] buffer;
+
+        private int bufferPos;
+
+        private int bufferLen;
+
+        private boolean eof;
+
+        public InflatingInputStream(InputStream in, InflaterPool pool) throws IOException {
+            this.in = in;
+            this.pool = pool;
+            this.gzip = pool.isGzip();
+            this.buffer = BufferPool.acquireHeap();
+            this.inflater = pool.acquire();
+            try {
+                if (this.gzip) {
+                    readByte();
+                    readByte();
+                    readGzipHeader();
+                }
+                startInflating();
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            return (read(this.single, 0, 1) < 0 ? -1 : this.single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (this.inflater == null) {
+                throw new IOException("Stream closed");
+            }
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            while (!this.eof) {
+                int count;
+                try {
+                    count = this.inflater.inflate(b, off, len);
+                } catch (DataFormatException ex) {
+                    throw new ZipException(ex.getMessage() != null ? ex.getMessage() : "Invalid compressed data");
+                }
+                if (count > 0) {
+                    if (this.gzip) {
+                        this.crc.update(b, off, count);
+                    }
+                    return count;
+                }
+                if (this.inflater.finished()) {
+                    memberFinished();
+                } else if (this.inflater.needsDictionary()) {
+                    throw new ZipException("Preset dictionaries are not supported");
+                } else if (this.inflater.needsInput()) {
+                    if (!fillBuffer()) {
+                        throw new EOFException("Unexpected end of compressed content");
+                    }
+                    startInflating();
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.inflater != null) {
+                this.pool.release(this.inflater);
+                this.inflater = null;
+                BufferPool.release(this.buffer);
+                this.buffer = null;
+                this.in.close();
+            }
+        }
+
+        private void startInflating() {
+            if (this.bufferPos < this.bufferLen) {
+                this.inflater.setInput(this.buffer, this.bufferPos, this.bufferLen - this.bufferPos);
+            }
+        }
+
+        private void memberFinished() throws IOException {
+            this.bufferPos = this.bufferLen - this.inflater.getRemaining();
+            if (!this.gzip) {
+                this.eof = true;
+                return;
+            }
+            long crcValue = readIntLE() & 0xFFFFFFFFL;
+            long size = readIntLE() & 0xFFFFFFFFL;
+            if (crcValue != this.crc.getValue()) {
+                throw new ZipException("Corrupt gzip trailer: CRC mismatch");
+            }
+            if (size != (this.inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+                throw new ZipException("Corrupt gzip trailer: size mismatch");
+            }
+            // Concatenated gzip members form a single stream, trailing garbage is ignored
+            int id1 = readByteOrEOF();
+            int id2 = (id1 < 0 ? -1 : readByteOrEOF());
+            if (id1 != 0x1F || id2 != 0x8B) {
+                this.eof = true;
+                return;
+            }
+            this.inflater.reset();
+            this.crc.reset();
+            readGzipHeader();
+            startInflating();
+        }
+
+        /**
+         * Parse the rest of a gzip member header, after the two magic bytes.
+         */
+        private void readGzipHeader() throws IOException {
+            if (readByte() != 8) {
+                throw new ZipException("Unsupported gzip compression method");
+            }
+            int flags = readByte();
+            skipBytes(6);
+            if ((flags & FEXTRA) != 0) {
+                skipBytes(readByte() | (readByte() << 8));
+            }
+            if ((flags & FNAME) != 0) {
+                while (readByte() != 0) {
+                }
+            }
+            if ((flags & FCOMMENT) != 0) {
+                while (readByte() != 0) {
+                }
+            }
+            if ((flags & FHCRC) != 0) {
+                skipBytes(2);
+            }
+        }
+
+        private int readIntLE() throws IOException {
+            return readByte() | (readByte() << 8) | (readByte() << 16) | (readByte() << 24);
+        }
+
+        private void skipBytes(int count) throws IOException {
+            for (int i = 0; i < count; i++) {
+                readByte();
+            }
+        }
+
+        private int readByte() throws IOException {
+            int b = readByteOrEOF();
+            if (b < 0) {
+                throw new EOFException("Unexpected end of gzip content");
+            }
+            return b;
+        }
+
+        private int readByteOrEOF() throws IOException {
+            if (this.bufferPos >= this.bufferLen && !fillBuffer()) {
+                return -1;
+            }
+            return this.buffer[this.bufferPos++] & 0xFF;
+        }
+
+        private boolean fillBuffer() throws IOException {
+            int count;
+            do {
+                count = this.in.read(this.buffer, 0, this.buffer.length);
+            } while (count == 0);
+            if (count < 0) {
+                this.bufferPos = this.bufferLen = 0;
+                return false;
+            }
+            this.bufferPos = 0;
+            this.bufferLen = count;
+            return true;
+        }
+    }
+
+}
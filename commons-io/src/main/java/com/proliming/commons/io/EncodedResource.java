@@ -21,6 +21,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.Spliterator;
 
 import com.proliming.commons.utils.Verify;
 
@@ -136,6 +137,56 @@ public class EncodedResource implements InputStreamSource {
         }
     }
 
+    /**
+     * Open a {@link RecordReader} that streams the lines of the specified resource,
+     * terminated by "\n" or "\r\n", decoded with the specified {@link #getCharset() Charset}
+     * or {@linkplain #getEncoding() encoding} (if any).
+     * <p>Lines are handed out as {@code CharSequence} views onto a reusable buffer
+     * instead of as individual Strings.
+     *
+     * @throws IOException if opening the underlying channel failed
+     * @see #records(String)
+     */
+    public RecordReader lines() throws IOException {
+        return new RecordReader(this.resource.readableChannel(), resolveCharset());
+    }
+
+    /**
+     * Open a {@link RecordReader} that streams the records of the specified resource,
+     * separated by the given delimiter and decoded with the specified
+     * {@link #getCharset() Charset} or {@linkplain #getEncoding() encoding} (if any).
+     *
+     * @param delimiter the record delimiter; must not be empty
+     *
+     * @throws IOException if opening the underlying channel failed
+     * @see #lines()
+     */
+    public RecordReader records(String delimiter) throws IOException {
+        Verify.notNull(delimiter, "Delimiter must not be null");
+        return new RecordReader(this.resource.readableChannel(), resolveCharset(), delimiter);
+    }
+
+    /**
+     * Return a {@link Spliterator} over the lines of the specified resource that
+     * splits the content at line boundaries, for example for processing the lines
+     * of a large file with a parallel stream.
+     * <p>Requires the resource to be a {@link MappedResource} and the content to be
+     * encoded in UTF-8, US-ASCII or ISO-8859-1. Lines are handed out as reusable
+     * {@code CharSequence} views that are only valid within the action they are
+     * passed to.
+     *
+     * @throws IOException if the resource cannot be mapped
+     * @see #lines()
+     */
+    public Spliterator<CharSequence> lineSpliterator() throws IOException {
+        Verify.verify(this.resource instanceof MappedResource,
+                "Line spliterator requires a MappedResource: %s", this.resource);
+        Charset charset = resolveCharset();
+        Verify.verify(MappedLineSpliterator.supports(charset),
+                "Line spliterator does not support charset %s", charset);
+        return new MappedLineSpliterator(((MappedResource) this.resource).getMappedRegions(), charset);
+    }
+
     /**
      * Open a {@code java.io.InputStream} for the specified resource, ignoring any
      * specified {@link #getCharset() Charset} or {@linkplain #getEncoding() encoding}.
@@ -149,6 +200,16 @@ public class EncodedResource implements InputStreamSource {
         return this.resource.getInputStream();
     }
 
+    private Charset resolveCharset() {
+        if (this.charset != null) {
+            return this.charset;
+        } else if (this.encoding != null) {
+            return Charset.forName(this.encoding);
+        } else {
+            return Charset.defaultCharset();
+        }
+    }
+
     @Override
     public boolean equals(Object other) {
         if (this == other) {
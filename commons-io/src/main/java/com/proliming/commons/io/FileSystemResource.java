@@ -18,12 +18,19 @@ package com.proliming.commons.io;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 import com.google.common.base.Preconditions;
 import com.proliming.commons.utils.StringUtils;
@@ -32,9 +39,10 @@ import com.proliming.commons.utils.Verify;
 /**
  * {@link Resource} implementation for {@code java.io.File} handles.
  * Obviously supports resolution as File, and also as URL.
- * Implements the extended {@link WritableResource} interface.
+ * Implements the extended {@link AtomicWritableResource} and {@link MappedResource}
+ * interfaces.
  */
-public class FileSystemResource extends AbstractResource implements WritableResource {
+public class FileSystemResource extends AbstractResource implements AtomicWritableResource, MappedResource {
 
     private final File file;
 
@@ -114,6 +122,23 @@ public class FileSystemResource extends AbstractResource implements WritableReso
         return new FileInputStream(this.file);
     }
 
+    /**
+     * This implementation opens a FileChannel for the underlying file.
+     *
+     * @see java.nio.channels.FileChannel
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        if (this.file.isDirectory()) {
+            throw new FileNotFoundException(getPath() + " (is a directory)");
+        }
+        try {
+            return FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+        } catch (NoSuchFileException ex) {
+            throw new FileNotFoundException(ex.getMessage());
+        }
+    }
+
     /**
      * This implementation returns a URL for the underlying file.
      *
@@ -183,7 +208,7 @@ public class FileSystemResource extends AbstractResource implements WritableReso
         return "file [" + this.file.getAbsolutePath() + "]";
     }
 
-    // implementation of WritableResource
+    // implementation of AtomicWritableResource
 
     /**
      * This implementation checks whether the underlying file is marked as writable
@@ -207,6 +232,58 @@ public class FileSystemResource extends AbstractResource implements WritableReso
         return new FileOutputStream(this.file);
     }
 
+    /**
+     * This implementation opens an {@link AtomicFileOutputStream} that replaces
+     * the underlying file on close.
+     */
+    @Override
+    public AtomicFileOutputStream getAtomicOutputStream() throws IOException {
+        if (this.file.isDirectory()) {
+            throw new FileNotFoundException(getPath() + " (is a directory)");
+        }
+        return new AtomicFileOutputStream(this.file.toPath());
+    }
+
+    /**
+     * This implementation opens a FileChannel for the underlying file,
+     * creating or truncating it just like {@link #getOutputStream()}.
+     *
+     * @see java.nio.channels.FileChannel
+     */
+    @Override
+    public WritableByteChannel writableChannel() throws IOException {
+        try {
+            return FileChannel.open(this.file.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (NoSuchFileException ex) {
+            throw new FileNotFoundException(ex.getMessage());
+        }
+    }
+
+    // implementation of MappedResource
+
+    /**
+     * This implementation maps the underlying file, sharing the mapping
+     * with all other resources for the same file.
+     *
+     * @see java.nio.channels.FileChannel#map
+     */
+    @Override
+    public MappedByteBuffer[] getMappedRegions() throws IOException {
+        return MappedFileRegions.map(this.file.toPath());
+    }
+
+    /**
+     * This implementation slices the requested part from the shared mapping
+     * of the underlying file.
+     *
+     * @see java.nio.channels.FileChannel#map
+     */
+    @Override
+    public MappedByteBuffer getMappedRegion(long position, int size) throws IOException {
+        return MappedFileRegions.map(this.file.toPath(), position, size);
+    }
+
     /**
      * This implementation compares the underlying File references.
      */
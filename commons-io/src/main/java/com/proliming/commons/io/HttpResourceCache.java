@@ -0,0 +1,385 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import com.proliming.commons.utils.CopyUtils;
+import com.proliming.commons.utils.ResourceUtils;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Disk-backed cache for HTTP resources, used by {@link CachingUrlResource}.
+ * <p/>
+ * <p>Response bodies are stored in the cache directory together with their
+ * {@code ETag}, {@code Last-Modified} and {@code Content-Length} headers. Once the
+ * configured time-to-live has passed, a cached body is revalidated with a conditional
+ * GET ({@code If-None-Match}/{@code If-Modified-Since}); a {@code 304 Not Modified}
+ * response lets the stored body be served again without transferring it.
+ * <p>Metadata lookups for {@link Resource#exists()}, {@link Resource#contentLength()}
+ * and {@link Resource#lastModified()} are served from the same cached response: at
+ * most one request per time-to-live is issued for all three of them. Responses marked
+ * with {@code Cache-Control: no-store} are never written to disk.
+ *
+ * @see CachingUrlResource
+ */
+public class HttpResourceCache {
+
+    /**
+     * Default time-to-live of cached responses before revalidation, in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 5000;
+
+    private static final String BODY_FILE_SUFFIX = ".body";
+
+    private static final String METADATA_FILE_SUFFIX = ".properties";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+
+    private final long timeToLiveNanos;
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Create a new HttpResourceCache with the default time-to-live.
+     *
+     * @param directory the directory to store cached responses in
+     */
+    public HttpResourceCache(File directory) {
+        this(directory, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * Create a new HttpResourceCache.
+     *
+     * @param directory  the directory to store cached responses in
+     * @param timeToLive the time in milliseconds a cached response is used
+     *                   without revalidation
+     */
+    public HttpResourceCache(File directory, long timeToLive) {
+        Verify.notNull(directory, "Cache directory must not be null");
+        Verify.verify(timeToLive >= 0, "Time-to-live must not be negative");
+        this.directory = directory;
+        this.timeToLiveNanos = TimeUnit.MILLISECONDS.toNanos(timeToLive);
+    }
+
+    /**
+     * Return the directory that cached responses are stored in.
+     */
+    public final File getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Return a caching resource for the given URL.
+     *
+     * @param url the HTTP(S) URL
+     */
+    public CachingUrlResource getResource(URL url) {
+        return new CachingUrlResource(url, this);
+    }
+
+    /**
+     * Remove the cached response for the given URL, from memory and from disk.
+     *
+     * @param url the URL to evict
+     */
+    public void evict(URL url) {
+        String key = cacheKey(url);
+        this.entries.remove(key);
+        new File(this.directory, key + BODY_FILE_SUFFIX).delete();
+        new File(this.directory, key + METADATA_FILE_SUFFIX).delete();
+    }
+
+    /**
+     * Open the body of the given URL, serving it from disk if the cached copy is
+     * fresh or still valid according to the server.
+     * <p>The connection is customized by the given resource like its metadata
+     * requests, so configured headers and timeouts apply to cached fetches too.
+     */
+    InputStream getInputStream(URL url, CachingUrlResource resource) throws IOException {
+        String key = cacheKey(url);
+        Entry entry = getEntry(key);
+        if (entry != null && entry.bodyCached && isFresh(entry)) {
+            InputStream body = openBody(key);
+            if (body != null) {
+                return body;
+            }
+        }
+        HttpURLConnection con = openConnection(url);
+        resource.customizeConnection(con);
+        // The default customization switches to HEAD; the body requires a GET
+        con.setRequestMethod("GET");
+        if (entry != null && entry.bodyCached) {
+            if (entry.etag != null) {
+                con.setRequestProperty("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified > 0) {
+                con.setIfModifiedSince(entry.lastModified);
+            }
+        }
+        try {
+            int code = con.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+                InputStream body = openBody(key);
+                if (body != null) {
+                    this.entries.put(key, entry.revalidated(System.nanoTime()));
+                    return body;
+                }
+                // Body vanished from disk: fetch it unconditionally
+                con.disconnect();
+                evict(url);
+                return getInputStream(url, resource);
+            }
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                this.entries.put(key, Entry.missing(System.nanoTime()));
+                throw new FileNotFoundException("URL [" + url + "] responded with status " + code);
+            }
+            if (isNoStore(con)) {
+                return con.getInputStream();
+            }
+            Entry fetched = Entry.fromResponse(con, true, System.nanoTime());
+            storeBody(key, con.getInputStream());
+            storeMetadata(key, fetched);
+            this.entries.put(key, fetched);
+            return openBody(key);
+        } catch (IOException ex) {
+            con.disconnect();
+            throw ex;
+        }
+    }
+
+    /**
+     * Return the metadata of the given URL, from the cached response if fresh,
+     * otherwise issuing a single HEAD request.
+     */
+    Entry getMetadata(URL url, CachingUrlResource resource) throws IOException {
+        String key = cacheKey(url);
+        Entry entry = getEntry(key);
+        if (entry != null && isFresh(entry)) {
+            return entry;
+        }
+        HttpURLConnection con = openConnection(url);
+        resource.customizeConnection(con);
+        try {
+            int code = con.getResponseCode();
+            Entry fetched;
+            if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                fetched = Entry.missing(System.nanoTime());
+            } else {
+                fetched = Entry.fromResponse(con, false, System.nanoTime());
+                if (entry != null && entry.bodyCached && entry.sameVersion(fetched)) {
+                    // The stored body is still current
+                    fetched = entry.revalidated(fetched.validatedAt);
+                }
+            }
+            this.entries.put(key, fetched);
+            return fetched;
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    private HttpURLConnection openConnection(URL url) throws IOException {
+        URLConnection con = url.openConnection();
+        Verify.verify(con instanceof HttpURLConnection, "Not an HTTP URL: %s", url);
+        ResourceUtils.useCachesIfNecessary(con);
+        return (HttpURLConnection) con;
+    }
+
+    private boolean isFresh(Entry entry) {
+        return (System.nanoTime() - entry.validatedAt < this.timeToLiveNanos);
+    }
+
+    private static boolean isNoStore(URLConnection con) {
+        String cacheControl = con.getHeaderField("Cache-Control");
+        return (cacheControl != null && cacheControl.toLowerCase().contains("no-store"));
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            entry = loadMetadata(key);
+            if (entry != null) {
+                Entry existing = this.entries.putIfAbsent(key, entry);
+                if (existing != null) {
+                    entry = existing;
+                }
+            }
+        }
+        return entry;
+    }
+
+    private InputStream openBody(String key) {
+        try {
+            return new FileInputStream(new File(this.directory, key + BODY_FILE_SUFFIX));
+        } catch (FileNotFoundException ex) {
+            return null;
+        }
+    }
+
+    private void storeBody(String key, InputStream body) throws IOException {
+        File tempFile = createTempFile(key);
+        try {
+            CopyUtils.copy(body, new FileOutputStream(tempFile));
+            Files.move(tempFile.toPath(), new File(this.directory, key + BODY_FILE_SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private void storeMetadata(String key, Entry entry) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("contentLength", String.valueOf(entry.contentLength));
+        properties.setProperty("lastModified", String.valueOf(entry.lastModified));
+        if (entry.etag != null) {
+            properties.setProperty("etag", entry.etag);
+        }
+        File tempFile = createTempFile(key);
+        try {
+            OutputStream out = new FileOutputStream(tempFile);
+            try {
+                properties.store(out, null);
+            } finally {
+                out.close();
+            }
+            Files.move(tempFile.toPath(), new File(this.directory, key + METADATA_FILE_SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * Load persisted metadata from a previous run. The entry is considered
+     * stale, so it is revalidated on first use.
+     */
+    private Entry loadMetadata(String key) {
+        File metadataFile = new File(this.directory, key + METADATA_FILE_SUFFIX);
+        if (!metadataFile.isFile() || !new File(this.directory, key + BODY_FILE_SUFFIX).isFile()) {
+            return null;
+        }
+        Properties properties = new Properties();
+        try {
+            InputStream in = new FileInputStream(metadataFile);
+            try {
+                properties.load(in);
+            } finally {
+                in.close();
+            }
+            long stale = System.nanoTime() - this.timeToLiveNanos;
+            return new Entry(true, Long.parseLong(properties.getProperty("contentLength", "-1")),
+                    Long.parseLong(properties.getProperty("lastModified", "0")),
+                    properties.getProperty("etag"), true, stale);
+        } catch (IOException ex) {
+            return null;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private File createTempFile(String key) throws IOException {
+        this.directory.mkdirs();
+        return File.createTempFile(key, ".tmp", this.directory);
+    }
+
+    private static String cacheKey(URL url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.toExternalForm().getBytes(UTF_8));
+            StringBuilder key = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                key.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 not supported by this JVM", ex);
+        }
+    }
+
+    /**
+     * Cached response metadata of a single URL.
+     */
+    static final class Entry {
+
+        final boolean exists;
+
+        final long contentLength;
+
+        final long lastModified;
+
+        final String etag;
+
+        final boolean bodyCached;
+
+        final long validatedAt;
+
+        Entry(boolean exists, long contentLength, long lastModified, String etag, boolean bodyCached,
+              long validatedAt) {
+            this.exists = exists;
+            this.contentLength = contentLength;
+            this.lastModified = lastModified;
+            this.etag = etag;
+            this.bodyCached = bodyCached;
+            this.validatedAt = validatedAt;
+        }
+
+        static Entry fromResponse(HttpURLConnection con, boolean bodyCached, long validatedAt) throws IOException {
+            int code = con.getResponseCode();
+            boolean exists = (code == HttpURLConnection.HTTP_OK || con.getContentLengthLong() >= 0);
+            return new Entry(exists, con.getContentLengthLong(), con.getLastModified(), con.getHeaderField("ETag"),
+                    bodyCached, validatedAt);
+        }
+
+        static Entry missing(long validatedAt) {
+            return new Entry(false, -1, 0, null, false, validatedAt);
+        }
+
+        Entry revalidated(long validatedAt) {
+            return new Entry(this.exists, this.contentLength, this.lastModified, this.etag, this.bodyCached,
+                    validatedAt);
+        }
+
+        boolean sameVersion(Entry other) {
+            if (this.etag != null && other.etag != null) {
+                return this.etag.equals(other.etag);
+            }
+            return (this.lastModified > 0 && this.lastModified == other.lastModified);
+        }
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.proliming.commons.utils.AntPathMatcher;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link ResourcePatternResolver} implementation that matches class path patterns
+ * against a prebuilt index of all entries in the class path's jar files and directories.
+ * <p/>
+ * <p>The index is built once, on the first pattern lookup, by scanning every class path
+ * root of the resolver's ClassLoader and its parents; afterwards each pattern is matched
+ * in memory. The jar part of the index can optionally be persisted to an index file, so
+ * that later startups only need to rescan jar files that changed since.
+ * <p>Supported locations:
+ * <ul>
+ * <li>"classpath*:" patterns, e.g. "classpath*:META-INF/&#42;&#42;/*.xml", matched
+ * against the index across all class path roots</li>
+ * <li>"classpath*:" locations without wildcards, resolved through
+ * {@link ClassLoader#getResources(String)}</li>
+ * <li>"classpath:" patterns, matched against the index, but only within the first
+ * class path root that has matching entries</li>
+ * <li>any other location without wildcards, resolved as a single resource through the
+ * underlying {@link ResourceLoader}</li>
+ * </ul>
+ * <p>Only entries present when the index was built are found; call {@link #refresh()}
+ * to rebuild it.
+ *
+ * @see AntPathMatcher
+ * @see #CLASSPATH_ALL_URL_PREFIX
+ */
+public class IndexedResourcePatternResolver implements ResourcePatternResolver {
+
+    private final ResourceLoader resourceLoader;
+
+    private final File indexFile;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private volatile ClassPathIndex index;
+
+    /**
+     * Create a new IndexedResourcePatternResolver with a {@link DefaultResourceLoader}
+     * and without a persistent index.
+     */
+    public IndexedResourcePatternResolver() {
+        this(new DefaultResourceLoader());
+    }
+
+    /**
+     * Create a new IndexedResourcePatternResolver without a persistent index.
+     *
+     * @param resourceLoader the ResourceLoader to load single resources with
+     *                       and to obtain the ClassLoader from
+     */
+    public IndexedResourcePatternResolver(ResourceLoader resourceLoader) {
+        this(resourceLoader, null);
+    }
+
+    /**
+     * Create a new IndexedResourcePatternResolver.
+     *
+     * @param resourceLoader the ResourceLoader to load single resources with
+     *                       and to obtain the ClassLoader from
+     * @param indexFile      the file to persist the jar index to, or {@code null} for none
+     */
+    public IndexedResourcePatternResolver(ResourceLoader resourceLoader, File indexFile) {
+        Verify.notNull(resourceLoader, "ResourceLoader must not be null");
+        this.resourceLoader = resourceLoader;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Return the ResourceLoader that this resolver loads single resources with.
+     */
+    public ResourceLoader getResourceLoader() {
+        return this.resourceLoader;
+    }
+
+    @Override
+    public Resource getResource(String location) {
+        return this.resourceLoader.getResource(location);
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return this.resourceLoader.getClassLoader();
+    }
+
+    @Override
+    public Resource[] getResources(String locationPattern) throws IOException {
+        Verify.notNull(locationPattern, "Location pattern must not be null");
+        Set<Resource> result = new LinkedHashSet<Resource>();
+        if (locationPattern.startsWith(CLASSPATH_ALL_URL_PREFIX)) {
+            String path = stripLeadingSlash(locationPattern.substring(CLASSPATH_ALL_URL_PREFIX.length()));
+            if (this.pathMatcher.isPattern(path)) {
+                getIndex().findResources(path, this.pathMatcher, false, result);
+            } else {
+                findAllClassPathResources(path, result);
+            }
+        } else if (locationPattern.startsWith(CLASSPATH_URL_PREFIX) &&
+                this.pathMatcher.isPattern(locationPattern)) {
+            String path = stripLeadingSlash(locationPattern.substring(CLASSPATH_URL_PREFIX.length()));
+            getIndex().findResources(path, this.pathMatcher, true, result);
+        } else {
+            Verify.verify(!this.pathMatcher.isPattern(locationPattern),
+                    "Only class path patterns are supported: %s", locationPattern);
+            result.add(getResource(locationPattern));
+        }
+        return result.toArray(new Resource[result.size()]);
+    }
+
+    /**
+     * Discard the current index, so that it gets rebuilt on the next pattern lookup.
+     */
+    public void refresh() {
+        this.index = null;
+    }
+
+    private ClassPathIndex getIndex() throws IOException {
+        ClassPathIndex index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = ClassPathIndex.build(getClassLoader(), this.indexFile);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    private void findAllClassPathResources(String path, Set<Resource> result) throws IOException {
+        ClassLoader classLoader = getClassLoader();
+        Enumeration<URL> urls = (classLoader != null ? classLoader.getResources(path) :
+                                         ClassLoader.getSystemResources(path));
+        while (urls.hasMoreElements()) {
+            result.add(new UrlResource(urls.nextElement()));
+        }
+    }
+
+    private static String stripLeadingSlash(String path) {
+        return (path.startsWith("/") ? path.substring(1) : path);
+    }
+
+}
@@ -31,9 +31,10 @@ import com.google.common.base.Preconditions;
  * for an <i>already opened</i> resource - therefore returning {@code true} from
  * {@link #isOpen()}. Do not use an {@code InputStreamResource} if you need to
  * keep the resource descriptor somewhere, or if you need to read from a stream
- * multiple times.
+ * multiple times; use a {@link ReplayableInputStreamResource} for the latter.
  *
  * @see ByteArrayResource
+ * @see ReplayableInputStreamResource
  * @see ClassPathResource
  * @see FileSystemResource
  * @see UrlResource
@@ -44,6 +45,10 @@ public class InputStreamResource extends AbstractResource {
 
     private final String description;
 
+    private final long contentLength;
+
+    private volatile long readContentLength = -1;
+
     private boolean read = false;
 
     /**
@@ -62,9 +67,24 @@ public class InputStreamResource extends AbstractResource {
      * @param description where the InputStream comes from
      */
     public InputStreamResource(InputStream inputStream, String description) {
+        this(inputStream, description, -1);
+    }
+
+    /**
+     * Create a new InputStreamResource with a known content length,
+     * e.g. taken from a Content-Length header or an archive entry.
+     * <p>Reporting the length up front spares {@link #contentLength()}
+     * from reading - and thereby consuming - the single-use stream.
+     *
+     * @param inputStream   the InputStream to use
+     * @param description   where the InputStream comes from
+     * @param contentLength the number of bytes in the stream, or -1 if unknown
+     */
+    public InputStreamResource(InputStream inputStream, String description, long contentLength) {
         Preconditions.checkNotNull(inputStream, "InputStream must not be null");
         this.inputStream = inputStream;
         this.description = (description != null ? description : "");
+        this.contentLength = contentLength;
     }
 
     /**
@@ -83,13 +103,32 @@ public class InputStreamResource extends AbstractResource {
         return true;
     }
 
+    /**
+     * This implementation returns the content length given on construction,
+     * if any. Otherwise, the stream is read to determine the length, after
+     * which it cannot be obtained through {@link #getInputStream()} anymore;
+     * the length read is remembered for subsequent calls.
+     */
+    @Override
+    public long contentLength() throws IOException {
+        if (this.contentLength >= 0) {
+            return this.contentLength;
+        }
+        long length = this.readContentLength;
+        if (length < 0) {
+            length = readContentLength();
+            this.readContentLength = length;
+        }
+        return length;
+    }
+
     /**
      * This implementation throws IllegalStateException if attempting to
      * read the underlying stream multiple times.
      */
     @Override
     public InputStream getInputStream() throws IOException, IllegalStateException {
-        Preconditions.checkState(this.read, "InputStream has already been read - " +
+        Preconditions.checkState(!this.read, "InputStream has already been read - " +
                 "do not use InputStreamResource if a stream needs to be read multiple times");
         this.read = true;
         return this.inputStream;
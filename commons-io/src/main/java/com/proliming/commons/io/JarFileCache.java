@@ -0,0 +1,406 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import com.proliming.commons.utils.ResourceUtils;
+import com.proliming.commons.utils.SystemUtils;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Bounded cache of open {@link JarFile} handles, shared by all jar entry reads
+ * through {@link UrlResource} and {@link ClassPathResource}.
+ * <p/>
+ * <p>Opening a jar file parses its central directory, which dominates the cost of
+ * reading a small entry; {@code URLConnection}-based reads with caching disabled
+ * pay that cost on every read. This cache keeps recently used jar files open and
+ * reads entries straight from the cached handle instead. Reads of different jar
+ * files do not contend; only opening a jar file locks the cache.
+ * <p>Handles are reference counted: every stream handed out holds a reference until
+ * it is closed, or until it has been garbage collected without being closed. When the
+ * cache exceeds its maximum size, the least recently used handles are closed -
+ * immediately if unused, otherwise once their last stream is released.
+ * <p>Keeping jar files open has a cost: a cached handle does not notice that its jar
+ * file has been replaced on disk until it is evicted or {@linkplain #clear() cleared},
+ * and on Windows an open jar file cannot be deleted or replaced at all. The
+ * {@linkplain #getSharedInstance() shared instance} is therefore disabled on Windows,
+ * and can be sized, replaced or disabled through {@link #setSharedInstance(JarFileCache)}
+ * or the {@value #MAX_SIZE_PROPERTY_NAME} system property, where 0 disables it.
+ * <p>Only "jar:" URLs pointing into a jar file in the file system are served from
+ * the cache; other URLs, e.g. nested jars, are left to {@code URLConnection}. So
+ * are multi-release jar files and URLs with a fragment such as the "#runtime" of
+ * class loader URLs on Java 9+, for which {@code URLConnection} serves the entry
+ * version matching the running Java version, while the cache would serve the base
+ * entry.
+ */
+public class JarFileCache {
+
+    /**
+     * Default maximum number of cached jar file handles: 64.
+     */
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    /**
+     * System property that sets the maximum size of the shared instance,
+     * with 0 disabling it: {@value}.
+     */
+    public static final String MAX_SIZE_PROPERTY_NAME = "com.proliming.commons.io.JarFileCache.maxSize";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String MULTI_RELEASE_ATTRIBUTE_NAME = "Multi-Release";
+
+    private static volatile JarFileCache sharedInstance = createSharedInstance();
+
+    private final int maxSize;
+
+    private final ConcurrentMap<File, Handle> handles = new ConcurrentHashMap<File, Handle>();
+
+    private final AtomicLong accessClock = new AtomicLong();
+
+    private final ReferenceQueue<HandleInputStream> abandonedStreams = new ReferenceQueue<HandleInputStream>();
+
+    private final Set<StreamReference> streamReferences =
+            Collections.newSetFromMap(new ConcurrentHashMap<StreamReference, Boolean>());
+
+    /**
+     * Create a new {@code JarFileCache}.
+     *
+     * @param maxSize the maximum number of jar file handles to keep open
+     */
+    public JarFileCache(int maxSize) {
+        Verify.verify(maxSize > 0, "Maximum size must be positive: %s", maxSize);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Return the cache shared by {@link UrlResource} and {@link ClassPathResource}.
+     *
+     * @return the shared cache, or {@code null} if jar entries are to be read
+     * through {@code URLConnection}
+     */
+    public static JarFileCache getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Replace the cache shared by {@link UrlResource} and {@link ClassPathResource},
+     * clearing the previous one.
+     *
+     * @param cache the new shared cache, or {@code null} to read jar entries
+     *              through {@code URLConnection}
+     */
+    public static void setSharedInstance(JarFileCache cache) {
+        JarFileCache previous = sharedInstance;
+        sharedInstance = cache;
+        if (previous != null && previous != cache) {
+            previous.clear();
+        }
+    }
+
+    private static JarFileCache createSharedInstance() {
+        int maxSize = (SystemUtils.IS_OS_WINDOWS ? 0 : DEFAULT_MAX_SIZE);
+        try {
+            maxSize = Integer.getInteger(MAX_SIZE_PROPERTY_NAME, maxSize);
+        } catch (SecurityException ex) {
+            // Not allowed to read system properties: use the default
+        }
+        return (maxSize > 0 ? new JarFileCache(maxSize) : null);
+    }
+
+    /**
+     * Open a stream for the jar entry that the given "jar:" URL points to,
+     * reading from a cached handle of the jar file.
+     *
+     * @param jarEntryUrl the URL of a jar entry, e.g. "jar:file:/lib/app.jar!/META-INF/app.xml"
+     *
+     * @return the entry's content stream, or {@code null} if the URL does not point
+     * into a jar file in the file system, has a fragment, or points into a
+     * multi-release jar file
+     *
+     * @throws FileNotFoundException if the jar file or the entry does not exist
+     * @throws IOException           if the jar file cannot be read
+     */
+    public InputStream getInputStream(URL jarEntryUrl) throws IOException {
+        Verify.notNull(jarEntryUrl, "URL must not be null");
+        if (!ResourceUtils.URL_PROTOCOL_JAR.equals(jarEntryUrl.getProtocol()) || jarEntryUrl.getRef() != null) {
+            return null;
+        }
+        String urlFile = jarEntryUrl.getFile();
+        int separatorIndex = urlFile.indexOf(ResourceUtils.JAR_URL_SEPARATOR);
+        if (separatorIndex == -1) {
+            return null;
+        }
+        String entryName = decode(urlFile.substring(separatorIndex + ResourceUtils.JAR_URL_SEPARATOR.length()));
+        if (entryName.contains(ResourceUtils.JAR_URL_SEPARATOR)) {
+            // Entry within a nested jar
+            return null;
+        }
+        URL jarFileUrl = ResourceUtils.extractJarFileURL(jarEntryUrl);
+        if (!ResourceUtils.isFileURL(jarFileUrl)) {
+            return null;
+        }
+        File file = ResourceUtils.getFile(jarFileUrl, "Jar URL").getAbsoluteFile();
+        releaseAbandonedStreams();
+        Handle handle = acquire(file);
+        if (handle.multiRelease) {
+            handle.release();
+            return null;
+        }
+        try {
+            ZipEntry entry = handle.jarFile.getEntry(entryName);
+            if (entry == null) {
+                throw new FileNotFoundException("JAR entry " + entryName + " not found in " + file);
+            }
+            InputStream in = handle.jarFile.getInputStream(entry);
+            HandleInputStream stream = new HandleInputStream(in);
+            stream.reference = new StreamReference(stream, handle);
+            return stream;
+        } catch (IOException ex) {
+            handle.release();
+            throw ex;
+        } catch (RuntimeException ex) {
+            handle.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Close all handles that are not in use and forget about the others,
+     * which are closed once their last stream is released.
+     */
+    public synchronized void clear() {
+        for (Handle handle : this.handles.values()) {
+            handle.evict();
+        }
+        this.handles.clear();
+    }
+
+    /**
+     * Return the number of cached handles.
+     */
+    public int size() {
+        return this.handles.size();
+    }
+
+    private Handle acquire(File file) throws IOException {
+        Handle handle = this.handles.get(file);
+        if (handle != null && handle.tryAcquire(this.accessClock.incrementAndGet())) {
+            return handle;
+        }
+        synchronized (this) {
+            handle = this.handles.get(file);
+            if (handle != null && handle.tryAcquire(this.accessClock.incrementAndGet())) {
+                return handle;
+            }
+            if (!file.isFile()) {
+                throw new FileNotFoundException(file + " (jar file does not exist)");
+            }
+            handle = openHandle(file);
+            handle.tryAcquire(this.accessClock.incrementAndGet());
+            this.handles.put(file, handle);
+            evictExcessHandles();
+            return handle;
+        }
+    }
+
+    private static Handle openHandle(File file) throws IOException {
+        JarFile jarFile = new JarFile(file);
+        try {
+            Manifest manifest = jarFile.getManifest();
+            boolean multiRelease = (manifest != null &&
+                    "true".equalsIgnoreCase(manifest.getMainAttributes().getValue(MULTI_RELEASE_ATTRIBUTE_NAME)));
+            return new Handle(jarFile, multiRelease);
+        } catch (IOException ex) {
+            jarFile.close();
+            throw ex;
+        } catch (RuntimeException ex) {
+            jarFile.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Evict the least recently used handles beyond the maximum size. Only called
+     * when opening a jar file, which is rare compared to reads from open ones.
+     */
+    private void evictExcessHandles() {
+        while (this.handles.size() > this.maxSize) {
+            Map.Entry<File, Handle> eldest = null;
+            for (Map.Entry<File, Handle> entry : this.handles.entrySet()) {
+                if (eldest == null || entry.getValue().lastAccess < eldest.getValue().lastAccess) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            this.handles.remove(eldest.getKey(), eldest.getValue());
+            eldest.getValue().evict();
+        }
+    }
+
+    /**
+     * Release the handle references of streams that were garbage collected without being closed.
+     */
+    private void releaseAbandonedStreams() {
+        Reference<? extends HandleInputStream> reference;
+        while ((reference = this.abandonedStreams.poll()) != null) {
+            ((StreamReference) reference).release();
+        }
+    }
+
+    /**
+     * Decode the %-escapes of an entry name in a jar URL.
+     */
+    private static String decode(String entryName) {
+        if (entryName.indexOf('%') == -1) {
+            return entryName;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(entryName.length());
+        for (int i = 0; i < entryName.length(); i++) {
+            char c = entryName.charAt(i);
+            if (c == '%' && i + 2 < entryName.length() && Character.digit(entryName.charAt(i + 1), 16) >= 0 &&
+                        Character.digit(entryName.charAt(i + 2), 16) >= 0) {
+                bytes.write((Character.digit(entryName.charAt(i + 1), 16) << 4) |
+                                    Character.digit(entryName.charAt(i + 2), 16));
+                i += 2;
+            } else {
+                byte[] encoded = String.valueOf(c).getBytes(UTF_8);
+                bytes.write(encoded, 0, encoded.length);
+            }
+        }
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+
+    /**
+     * An open jar file with the number of streams currently reading from it.
+     */
+    private static final class Handle {
+
+        private final JarFile jarFile;
+
+        private final boolean multiRelease;
+
+        private volatile long lastAccess;
+
+        private int references;
+
+        private boolean evicted;
+
+        public Handle(JarFile jarFile, boolean multiRelease) {
+            this.jarFile = jarFile;
+            this.multiRelease = multiRelease;
+        }
+
+        public synchronized boolean tryAcquire(long accessTime) {
+            if (this.evicted) {
+                return false;
+            }
+            this.references++;
+            this.lastAccess = accessTime;
+            return true;
+        }
+
+        public synchronized void release() {
+            this.references--;
+            closeIfUnused();
+        }
+
+        public synchronized void evict() {
+            this.evicted = true;
+            closeIfUnused();
+        }
+
+        private void closeIfUnused() {
+            if (this.evicted && this.references == 0) {
+                try {
+                    this.jarFile.close();
+                } catch (IOException ex) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Releases a stream's handle reference exactly once: when the stream is closed,
+     * or after it has been garbage collected without being closed.
+     */
+    private final class StreamReference extends PhantomReference<HandleInputStream> {
+
+        private final Handle handle;
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public StreamReference(HandleInputStream stream, Handle handle) {
+            super(stream, abandonedStreams);
+            this.handle = handle;
+            streamReferences.add(this);
+        }
+
+        public void release() {
+            if (this.released.compareAndSet(false, true)) {
+                streamReferences.remove(this);
+                this.handle.release();
+            }
+        }
+    }
+
+    /**
+     * Entry stream that releases its handle reference when closed.
+     */
+    private static class HandleInputStream extends FilterInputStream {
+
+        private StreamReference reference;
+
+        public HandleInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                this.reference.release();
+            }
+        }
+    }
+
+}
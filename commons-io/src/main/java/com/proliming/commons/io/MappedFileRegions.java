@@ -0,0 +1,190 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Shared read-only mappings of files, backing the {@link MappedResource}
+ * implementations.
+ * <p/>
+ * <p>Mappings are kept per absolute path and softly referenced, so they are
+ * reused by all resources pointing to the same file and released by the garbage
+ * collector under memory pressure. A mapping is discarded as soon as the size
+ * or the last-modified timestamp of the file changes; cache entries whose mapping
+ * was collected are purged on the next lookup. Each region of a file is mapped
+ * when it is first requested.
+ * <p>Note that a file must not be truncated while mapped views of it are
+ * still in use; accessing a mapped region beyond the end of the file fails.
+ */
+final class MappedFileRegions {
+
+    private static final ConcurrentMap<Path, RegionsReference> regionsCache =
+            new ConcurrentHashMap<Path, RegionsReference>(64);
+
+    private static final ReferenceQueue<MappedFileRegions> collectedRegions = new ReferenceQueue<MappedFileRegions>();
+
+    private final Path path;
+
+    private final long size;
+
+    private final long lastModified;
+
+    private final AtomicReferenceArray<MappedByteBuffer> regions;
+
+    private MappedFileRegions(Path path, long size, long lastModified) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        int count = (int) Math.max(1, (size + MappedResource.MAX_REGION_SIZE - 1) / MappedResource.MAX_REGION_SIZE);
+        this.regions = new AtomicReferenceArray<MappedByteBuffer>(count);
+    }
+
+    /**
+     * Return independent read-only views of all regions of the given file.
+     *
+     * @param path the file to map
+     *
+     * @throws IOException if the file cannot be mapped
+     * @see MappedResource#getMappedRegions()
+     */
+    static MappedByteBuffer[] map(Path path) throws IOException {
+        MappedFileRegions shared = forPath(path);
+        MappedByteBuffer[] result = new MappedByteBuffer[shared.regions.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (MappedByteBuffer) shared.getRegion(i).duplicate();
+        }
+        return result;
+    }
+
+    /**
+     * Return a read-only view of the given part of the file. Parts within
+     * a single region are sliced from the shared mapping; parts spanning
+     * two regions get a dedicated mapping.
+     *
+     * @param path     the file to map
+     * @param position the start of the part
+     * @param size     the size of the part
+     *
+     * @throws IOException if the file cannot be mapped
+     * @see MappedResource#getMappedRegion(long, int)
+     */
+    static MappedByteBuffer map(Path path, long position, int size) throws IOException {
+        Verify.verify(position >= 0, "Position must not be negative");
+        Verify.verify(size >= 0 && size <= MappedResource.MAX_REGION_SIZE,
+                "Size must be between 0 and %s", MappedResource.MAX_REGION_SIZE);
+        MappedFileRegions shared = forPath(path);
+        if (position + size > shared.size) {
+            throw new IOException("Requested region [" + position + ", " + (position + size) +
+                    ") exceeds length " + shared.size + " of " + path);
+        }
+        int index = (size > 0 ? (int) (position / MappedResource.MAX_REGION_SIZE) : 0);
+        int offset = (size > 0 ? (int) (position % MappedResource.MAX_REGION_SIZE) : 0);
+        if (offset + size <= MappedResource.MAX_REGION_SIZE) {
+            MappedByteBuffer region = (MappedByteBuffer) shared.getRegion(index).duplicate();
+            region.position(offset);
+            region.limit(offset + size);
+            return (MappedByteBuffer) region.slice();
+        }
+        return mapRegion(shared.path, position, size);
+    }
+
+    /**
+     * Return the shared mapping of the given region, mapping it on first use.
+     */
+    private MappedByteBuffer getRegion(int index) throws IOException {
+        MappedByteBuffer region = this.regions.get(index);
+        if (region == null) {
+            long position = (long) index * MappedResource.MAX_REGION_SIZE;
+            long regionSize = Math.min(MappedResource.MAX_REGION_SIZE, this.size - position);
+            region = mapRegion(this.path, position, regionSize);
+            if (!this.regions.compareAndSet(index, null, region)) {
+                region = this.regions.get(index);
+            }
+        }
+        return region;
+    }
+
+    private static MappedFileRegions forPath(Path path) throws IOException {
+        Path key = path.toAbsolutePath();
+        BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+        if (attributes.isDirectory()) {
+            throw new FileNotFoundException(key + " (is a directory)");
+        }
+        long size = attributes.size();
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        purgeCollectedRegions();
+        RegionsReference ref = regionsCache.get(key);
+        MappedFileRegions cached = (ref != null ? ref.get() : null);
+        if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+            return cached;
+        }
+        MappedFileRegions created = new MappedFileRegions(key, size, lastModified);
+        regionsCache.put(key, new RegionsReference(key, created));
+        return created;
+    }
+
+    private static void purgeCollectedRegions() {
+        RegionsReference ref;
+        while ((ref = (RegionsReference) collectedRegions.poll()) != null) {
+            regionsCache.remove(ref.path, ref);
+        }
+    }
+
+    private static MappedByteBuffer mapRegion(Path path, long position, long size) throws IOException {
+        FileChannel channel;
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        } catch (UnsupportedOperationException ex) {
+            throw new IOException("File system of " + path + " does not support file channels", ex);
+        }
+        try {
+            return channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Soft reference to the mappings of a file, remembering the cache key
+     * to purge once the mappings are collected.
+     */
+    private static final class RegionsReference extends SoftReference<MappedFileRegions> {
+
+        private final Path path;
+
+        public RegionsReference(Path path, MappedFileRegions regions) {
+            super(regions, collectedRegions);
+            this.path = path;
+        }
+    }
+
+}
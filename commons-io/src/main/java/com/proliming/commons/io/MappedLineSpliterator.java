@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * {@link Spliterator} over the lines of a memory-mapped resource, splitting
+ * the content at line boundaries so that lines can be processed in parallel.
+ * <p/>
+ * <p>Only usable with charsets in which a '\n' byte always denotes a line feed,
+ * i.e. is never part of a multi-byte sequence; see {@link #supports(Charset)}.
+ * Each split decodes into its own reusable buffers, so handed out lines are
+ * only valid within the action they are passed to.
+ * <p>Line feeds are searched for directly in the buffer of each region, and line
+ * content is copied from it in bulk; only lines that span two regions are
+ * assembled from both.
+ *
+ * @see EncodedResource#lineSpliterator()
+ */
+final class MappedLineSpliterator implements Spliterator<CharSequence> {
+
+    /**
+     * Minimum number of bytes a spliterator must cover to be split further.
+     */
+    private static final long MIN_SPLIT_SIZE = 64 * 1024;
+
+    private final MappedByteBuffer[] regions;
+
+    private final Charset charset;
+
+    private long position;
+
+    private final long end;
+
+    private CharsetDecoder decoder;
+
+    private ByteBuffer[] regionViews;
+
+    private ByteBuffer lineBytes;
+
+    private CharBuffer lineChars;
+
+    private CharArraySequence line;
+
+    MappedLineSpliterator(MappedByteBuffer[] regions, Charset charset) {
+        this(regions, charset, 0, totalLength(regions));
+    }
+
+    private MappedLineSpliterator(MappedByteBuffer[] regions, Charset charset, long position, long end) {
+        this.regions = regions;
+        this.charset = charset;
+        this.position = position;
+        this.end = end;
+    }
+
+    /**
+     * Determine whether lines of content in the given charset can be split
+     * on '\n' bytes: true for UTF-8, US-ASCII and ISO-8859-1.
+     */
+    static boolean supports(Charset charset) {
+        String name = charset.name();
+        return ("UTF-8".equals(name) || "US-ASCII".equals(name) || "ISO-8859-1".equals(name));
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super CharSequence> action) {
+        if (this.position >= this.end) {
+            return false;
+        }
+        if (this.decoder == null) {
+            this.decoder = this.charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                                   .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.lineBytes = ByteBuffer.allocate(256);
+            this.lineChars = CharBuffer.allocate(256);
+            this.line = new CharArraySequence();
+            this.regionViews = new ByteBuffer[this.regions.length];
+        }
+        long lineEnd = indexOfLineFeed(this.position, this.end);
+        int lineLength = (int) (lineEnd - this.position);
+        if (this.lineBytes.capacity() < lineLength) {
+            this.lineBytes = ByteBuffer.allocate(Math.max(lineLength, this.lineBytes.capacity() * 2));
+        }
+        this.lineBytes.clear();
+        copyBytes(this.position, lineEnd, this.lineBytes);
+        this.position = lineEnd + 1;
+        this.lineBytes.flip();
+        if (this.lineBytes.hasRemaining() && this.lineBytes.get(this.lineBytes.limit() - 1) == '\r') {
+            this.lineBytes.limit(this.lineBytes.limit() - 1);
+        }
+        int maxChars = (int) Math.ceil(this.lineBytes.remaining() * (double) this.decoder.maxCharsPerByte());
+        if (this.lineChars.capacity() < maxChars) {
+            this.lineChars = CharBuffer.allocate(maxChars);
+        }
+        this.lineChars.clear();
+        this.decoder.reset();
+        this.decoder.decode(this.lineBytes, this.lineChars, true);
+        this.decoder.flush(this.lineChars);
+        this.line.set(this.lineChars.array(), 0, this.lineChars.position());
+        action.accept(this.line);
+        return true;
+    }
+
+    @Override
+    public Spliterator<CharSequence> trySplit() {
+        if (this.end - this.position < MIN_SPLIT_SIZE) {
+            return null;
+        }
+        long index = indexOfLineFeed(this.position + (this.end - this.position) / 2, this.end);
+        if (index >= this.end - 1) {
+            return null;
+        }
+        MappedLineSpliterator prefix = new MappedLineSpliterator(this.regions, this.charset, this.position, index + 1);
+        this.position = index + 1;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return this.end - this.position;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | IMMUTABLE;
+    }
+
+    private static long totalLength(MappedByteBuffer[] regions) {
+        long length = 0;
+        for (MappedByteBuffer region : regions) {
+            length += region.limit();
+        }
+        return length;
+    }
+
+    /**
+     * Return the index of the first '\n' byte between the given indexes,
+     * or {@code to} if there is none, scanning each region's buffer directly.
+     */
+    private long indexOfLineFeed(long from, long to) {
+        long index = from;
+        while (index < to) {
+            int regionIndex = (int) (index / MappedResource.MAX_REGION_SIZE);
+            long regionStart = (long) regionIndex * MappedResource.MAX_REGION_SIZE;
+            MappedByteBuffer region = this.regions[regionIndex];
+            int limit = (int) Math.min(region.limit(), to - regionStart);
+            for (int i = (int) (index - regionStart); i < limit; i++) {
+                if (region.get(i) == '\n') {
+                    return regionStart + i;
+                }
+            }
+            index = regionStart + limit;
+        }
+        return to;
+    }
+
+    /**
+     * Copy the bytes between the given indexes into the given buffer, in bulk
+     * from each region that they span.
+     */
+    private void copyBytes(long from, long to, ByteBuffer target) {
+        long index = from;
+        while (index < to) {
+            int regionIndex = (int) (index / MappedResource.MAX_REGION_SIZE);
+            long regionStart = (long) regionIndex * MappedResource.MAX_REGION_SIZE;
+            ByteBuffer view = this.regionViews[regionIndex];
+            if (view == null) {
+                view = this.regions[regionIndex].duplicate();
+                this.regionViews[regionIndex] = view;
+            }
+            int limit = (int) Math.min(this.regions[regionIndex].limit(), to - regionStart);
+            view.limit(limit);
+            view.position((int) (index - regionStart));
+            target.put(view);
+            index = regionStart + limit;
+        }
+    }
+
+}
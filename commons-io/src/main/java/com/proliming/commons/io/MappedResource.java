@@ -0,0 +1,66 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Extended interface for a resource whose content can be memory-mapped.
+ * Provides read-only {@link MappedByteBuffer} access to the content, so
+ * that repeated reads are served from the page cache without copying.
+ * <p/>
+ * <p>Since a single mapping cannot exceed {@link Integer#MAX_VALUE} bytes,
+ * content is exposed as a sequence of regions of at most {@link #MAX_REGION_SIZE}
+ * bytes each. Mappings are shared between all callers reading the same file;
+ * every call returns independent buffer views, so positions and limits
+ * can be changed freely.
+ *
+ * @see FileSystemResource
+ * @see PathResource
+ */
+public interface MappedResource extends Resource {
+
+    /**
+     * Maximum size of a single mapped region: 1 GB.
+     */
+    int MAX_REGION_SIZE = 1 << 30;
+
+    /**
+     * Return read-only mapped regions covering the entire content of this
+     * resource, in order. Every region but the last one is exactly
+     * {@link #MAX_REGION_SIZE} bytes long.
+     *
+     * @return the mapped regions (an empty content yields a single empty region)
+     *
+     * @throws IOException if the resource cannot be mapped
+     */
+    MappedByteBuffer[] getMappedRegions() throws IOException;
+
+    /**
+     * Return a read-only mapped view of the given part of this resource.
+     *
+     * @param position the position within the content at which the view starts
+     * @param size     the size of the view; must not exceed {@link #MAX_REGION_SIZE}
+     *
+     * @return the mapped view, positioned at zero
+     *
+     * @throws IOException if the resource cannot be mapped
+     */
+    MappedByteBuffer getMappedRegion(long position, int size) throws IOException;
+
+}
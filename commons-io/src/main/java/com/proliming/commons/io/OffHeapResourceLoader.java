@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link ResourceLoader} that serves resources from an {@link OffHeapResourceStore},
+ * falling back to a target ResourceLoader for locations not found in the store.
+ * <p/>
+ * <p>Locations are looked up in the store without a "classpath:" prefix, so both
+ * "templates/mail.html" and "classpath:templates/mail.html" find the entry stored
+ * under "templates/mail.html". The fallback loader is given the location as is.
+ *
+ * @see OffHeapResourceStore
+ */
+public class OffHeapResourceLoader implements ResourceLoader {
+
+    private final OffHeapResourceStore store;
+
+    private final ResourceLoader fallbackLoader;
+
+    /**
+     * Create a new {@code OffHeapResourceLoader} that falls back to
+     * a {@link DefaultResourceLoader}.
+     *
+     * @param store the store to serve resources from
+     */
+    public OffHeapResourceLoader(OffHeapResourceStore store) {
+        this(store, new DefaultResourceLoader());
+    }
+
+    /**
+     * Create a new {@code OffHeapResourceLoader}.
+     *
+     * @param store          the store to serve resources from
+     * @param fallbackLoader the ResourceLoader for locations not found in the store
+     */
+    public OffHeapResourceLoader(OffHeapResourceStore store, ResourceLoader fallbackLoader) {
+        Verify.notNull(store, "OffHeapResourceStore must not be null");
+        Verify.notNull(fallbackLoader, "Fallback ResourceLoader must not be null");
+        this.store = store;
+        this.fallbackLoader = fallbackLoader;
+    }
+
+    /**
+     * Return the store that this loader serves resources from.
+     */
+    public final OffHeapResourceStore getStore() {
+        return this.store;
+    }
+
+    @Override
+    public Resource getResource(String location) {
+        Verify.notNull(location, "Location must not be null");
+        String path = (location.startsWith(CLASSPATH_URL_PREFIX) ?
+                location.substring(CLASSPATH_URL_PREFIX.length()) : location);
+        Resource resource = this.store.get(path);
+        return (resource != null ? resource : this.fallbackLoader.getResource(location));
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return this.fallbackLoader.getClassLoader();
+    }
+
+}
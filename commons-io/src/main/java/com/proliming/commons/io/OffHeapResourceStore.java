@@ -0,0 +1,316 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.proliming.commons.utils.CopyUtils;
+import com.proliming.commons.utils.StringUtils;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Store for many small resources whose content is kept outside the Java heap,
+ * packed into large direct or memory-mapped buffers ("arenas").
+ * <p/>
+ * <p>Each stored entry is a slice of an arena, indexed by its path and exposed as a
+ * {@link ByteBufferResource} with zero-copy access to the content. Compared to keeping
+ * one {@code byte[]} per resource, this keeps the content out of the garbage collector's
+ * way, leaving only the small index on the heap.
+ * <p>Arenas are filled sequentially and never compacted: space of replaced or removed
+ * entries is only reclaimed by {@link #clear()}. Entries larger than the arena size
+ * get an arena of their own. Arenas are either direct buffers, or - if an arena
+ * directory is specified - mappings of unlinked temporary files, which lets the
+ * operating system page cold content out to disk instead of holding it in memory.
+ *
+ * @see OffHeapResourceLoader
+ */
+public class OffHeapResourceStore {
+
+    /**
+     * Default size of a single arena: 64 MB.
+     */
+    public static final int DEFAULT_ARENA_SIZE = 64 * 1024 * 1024;
+
+    private final File arenaDirectory;
+
+    private final int arenaSize;
+
+    private final ConcurrentMap<String, ByteBufferResource> entries =
+            new ConcurrentHashMap<String, ByteBufferResource>();
+
+    private final List<ByteBuffer> arenas = new ArrayList<ByteBuffer>();
+
+    private ByteBuffer currentArena;
+
+    private long reservedBytes;
+
+    private long usedBytes;
+
+    /**
+     * Create a new {@code OffHeapResourceStore} with direct arenas of the default size.
+     */
+    public OffHeapResourceStore() {
+        this(null, DEFAULT_ARENA_SIZE);
+    }
+
+    /**
+     * Create a new {@code OffHeapResourceStore}.
+     *
+     * @param arenaDirectory the directory to create file-backed arenas in,
+     *                       or {@code null} for direct arenas
+     * @param arenaSize      the size of a single arena
+     */
+    public OffHeapResourceStore(File arenaDirectory, int arenaSize) {
+        Verify.verify(arenaSize > 0, "Arena size must be positive: %s", arenaSize);
+        Verify.verify(arenaDirectory == null || arenaDirectory.isDirectory(),
+                "Arena directory does not exist: %s", arenaDirectory);
+        this.arenaDirectory = arenaDirectory;
+        this.arenaSize = arenaSize;
+    }
+
+    /**
+     * Store a copy of the given content under the given path, replacing any
+     * previous entry for the path.
+     *
+     * @param path    the path to store the content under
+     * @param content the content to copy into the store
+     *
+     * @return the stored entry
+     *
+     * @throws IOException if a file-backed arena cannot be created
+     */
+    public ByteBufferResource put(String path, byte[] content) throws IOException {
+        Verify.notNull(content, "Content must not be null");
+        return put(path, ByteBuffer.wrap(content));
+    }
+
+    /**
+     * Store a copy of the remaining content of the given buffer under the given path,
+     * replacing any previous entry for the path. The buffer's position is not changed.
+     *
+     * @param path    the path to store the content under
+     * @param content the content to copy into the store
+     *
+     * @return the stored entry
+     *
+     * @throws IOException if a file-backed arena cannot be created
+     */
+    public ByteBufferResource put(String path, ByteBuffer content) throws IOException {
+        Verify.notNull(content, "Content must not be null");
+        ByteBuffer slice = allocate(content.remaining());
+        slice.put(content.duplicate());
+        slice.flip();
+        return store(path, slice);
+    }
+
+    /**
+     * Store a copy of the content of the given resource under the given path,
+     * replacing any previous entry for the path. The content is read directly
+     * into the store, without an intermediate heap copy - except for the content
+     * of single-use resources ({@link Resource#isOpen()}), whose length cannot be
+     * determined without consuming them: these are read into a heap buffer first,
+     * and sized from the bytes actually read.
+     *
+     * @param path     the path to store the content under
+     * @param resource the resource to copy the content of
+     *
+     * @return the stored entry
+     *
+     * @throws IOException if the resource cannot be read, or its content does not
+     *                     match its {@linkplain Resource#contentLength() content length}
+     */
+    public ByteBufferResource put(String path, Resource resource) throws IOException {
+        Verify.notNull(resource, "Resource must not be null");
+        if (resource.isOpen()) {
+            return put(path, CopyUtils.copyToByteArray(resource.getInputStream()));
+        }
+        long length = resource.contentLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(resource.getDescription() + " is too large to be stored: " + length);
+        }
+        ByteBuffer slice = allocate((int) length);
+        ReadableByteChannel channel = resource.readableChannel();
+        try {
+            while (slice.hasRemaining() && channel.read(slice) >= 0) {
+            }
+            if (slice.hasRemaining()) {
+                throw new IOException(resource.getDescription() + " ended after " + slice.position() +
+                                              " bytes, expected " + length);
+            }
+            if (hasMoreContent(channel)) {
+                throw new IOException(resource.getDescription() + " has more content than its length of " +
+                                              length + " bytes");
+            }
+        } finally {
+            channel.close();
+        }
+        slice.flip();
+        return store(path, slice);
+    }
+
+    /**
+     * Return the entry stored under the given path.
+     *
+     * @param path the path of the entry
+     *
+     * @return the entry, or {@code null} if none
+     */
+    public ByteBufferResource get(String path) {
+        return this.entries.get(normalizePath(path));
+    }
+
+    /**
+     * Return whether an entry is stored under the given path.
+     */
+    public boolean contains(String path) {
+        return this.entries.containsKey(normalizePath(path));
+    }
+
+    /**
+     * Remove the entry stored under the given path. Its space in the
+     * arena is only reclaimed by {@link #clear()}.
+     *
+     * @param path the path of the entry
+     *
+     * @return the removed entry, or {@code null} if none
+     */
+    public synchronized ByteBufferResource remove(String path) {
+        ByteBufferResource removed = this.entries.remove(normalizePath(path));
+        if (removed != null) {
+            releaseUsed(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Remove all entries and drop all arenas. Arena memory is released once the
+     * previously returned entries are no longer referenced.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.arenas.clear();
+        this.currentArena = null;
+        this.reservedBytes = 0;
+        this.usedBytes = 0;
+    }
+
+    /**
+     * Return the number of stored entries.
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Return the total size of the content of all stored entries, in bytes.
+     */
+    public synchronized long getUsedBytes() {
+        return this.usedBytes;
+    }
+
+    /**
+     * Return the total size of all arenas, in bytes.
+     */
+    public synchronized long getReservedBytes() {
+        return this.reservedBytes;
+    }
+
+    /**
+     * Add the given content to the index. Index mutations and the accounting of used
+     * bytes happen under the store's lock, so that they stay consistent with {@link #clear()};
+     * lookups do not lock.
+     */
+    private synchronized ByteBufferResource store(String path, ByteBuffer content) {
+        String normalizedPath = normalizePath(path);
+        ByteBufferResource resource = new ByteBufferResource(content, normalizedPath);
+        ByteBufferResource previous = this.entries.put(normalizedPath, resource);
+        this.usedBytes += content.remaining();
+        if (previous != null) {
+            releaseUsed(previous);
+        }
+        return resource;
+    }
+
+    private void releaseUsed(ByteBufferResource resource) {
+        this.usedBytes -= resource.contentLength();
+    }
+
+    private static boolean hasMoreContent(ReadableByteChannel channel) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        int read;
+        while ((read = channel.read(probe)) == 0) {
+        }
+        return (read > 0);
+    }
+
+    /**
+     * Reserve a writable slice of the given length in an arena.
+     */
+    private synchronized ByteBuffer allocate(int length) throws IOException {
+        if (length > this.arenaSize) {
+            return allocateArena(length);
+        }
+        if (this.currentArena == null || this.currentArena.remaining() < length) {
+            this.currentArena = allocateArena(this.arenaSize);
+        }
+        ByteBuffer slice = this.currentArena.duplicate();
+        slice.limit(slice.position() + length);
+        this.currentArena.position(slice.limit());
+        return slice.slice();
+    }
+
+    private ByteBuffer allocateArena(int size) throws IOException {
+        ByteBuffer arena;
+        if (this.arenaDirectory == null) {
+            arena = ByteBuffer.allocateDirect(size);
+        } else {
+            Path file = Files.createTempFile(this.arenaDirectory.toPath(), "arena", ".bin");
+            try {
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    arena = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                } finally {
+                    channel.close();
+                }
+            } finally {
+                // The mapping stays valid after the file has been unlinked
+                Files.deleteIfExists(file);
+            }
+        }
+        this.arenas.add(arena);
+        this.reservedBytes += size;
+        return arena;
+    }
+
+    private static String normalizePath(String path) {
+        Verify.notNull(path, "Path must not be null");
+        String normalizedPath = StringUtils.cleanPath(path);
+        return (normalizedPath.startsWith("/") ? normalizedPath.substring(1) : normalizedPath);
+    }
+
+}
@@ -23,21 +23,26 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.OpenOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import com.proliming.commons.utils.Verify;
 
 /**
  * {@link Resource} implementation for {@code java.nio.file.Path} handles.
  * <p>Supports resolution as File, and also as URL.
- * <p>Implements the extended {@link WritableResource} interface.
+ * <p>Implements the extended {@link AtomicWritableResource} and {@link MappedResource}
+ * interfaces.
  *
  * @see java.nio.file.Path
  */
-public class PathResource extends AbstractResource implements WritableResource {
+public class PathResource extends AbstractResource implements AtomicWritableResource, MappedResource {
 
     private final Path path;
 
@@ -132,6 +137,23 @@ public class PathResource extends AbstractResource implements WritableResource {
         return Files.newInputStream(this.path);
     }
 
+    /**
+     * This implementation opens a byte channel for the underlying file,
+     * which is a {@link java.nio.channels.FileChannel} on the default file system.
+     *
+     * @see java.nio.file.Files#newByteChannel(Path, OpenOption...)
+     */
+    @Override
+    public ReadableByteChannel readableChannel() throws IOException {
+        if (!exists()) {
+            throw new FileNotFoundException(getPath() + " (no such file or directory)");
+        }
+        if (Files.isDirectory(this.path)) {
+            throw new FileNotFoundException(getPath() + " (is a directory)");
+        }
+        return Files.newByteChannel(this.path, StandardOpenOption.READ);
+    }
+
     /**
      * This implementation returns a URL for the underlying file.
      *
@@ -213,7 +235,7 @@ public class PathResource extends AbstractResource implements WritableResource {
         return "path [" + this.path.toAbsolutePath() + "]";
     }
 
-    // implementation of WritableResource
+    // implementation of AtomicWritableResource
 
     /**
      * This implementation checks whether the underlying file is marked as writable
@@ -240,6 +262,57 @@ public class PathResource extends AbstractResource implements WritableResource {
         return Files.newOutputStream(this.path);
     }
 
+    /**
+     * This implementation opens an {@link AtomicFileOutputStream} that replaces
+     * the underlying file on close.
+     */
+    @Override
+    public AtomicFileOutputStream getAtomicOutputStream() throws IOException {
+        if (Files.isDirectory(this.path)) {
+            throw new FileNotFoundException(getPath() + " (is a directory)");
+        }
+        return new AtomicFileOutputStream(this.path);
+    }
+
+    /**
+     * This implementation opens a byte channel for the underlying file,
+     * creating or truncating it just like {@link #getOutputStream()}.
+     *
+     * @see java.nio.file.Files#newByteChannel(Path, OpenOption...)
+     */
+    @Override
+    public WritableByteChannel writableChannel() throws IOException {
+        if (Files.isDirectory(this.path)) {
+            throw new FileNotFoundException(getPath() + " (is a directory)");
+        }
+        return Files.newByteChannel(this.path, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    // implementation of MappedResource
+
+    /**
+     * This implementation maps the underlying file, sharing the mapping
+     * with all other resources for the same file.
+     *
+     * @see java.nio.channels.FileChannel#map
+     */
+    @Override
+    public MappedByteBuffer[] getMappedRegions() throws IOException {
+        return MappedFileRegions.map(this.path);
+    }
+
+    /**
+     * This implementation slices the requested part from the shared mapping
+     * of the underlying file.
+     *
+     * @see java.nio.channels.FileChannel#map
+     */
+    @Override
+    public MappedByteBuffer getMappedRegion(long position, int size) throws IOException {
+        return MappedFileRegions.map(this.path, position, size);
+    }
+
     /**
      * This implementation compares the underlying Path references.
      */
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+import com.proliming.commons.utils.BufferPool;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Streaming reader that splits character content into lines or delimited records,
+ * without allocating a String per record.
+ * <p/>
+ * <p>Bytes are read from a channel into a pooled buffer and decoded into a reusable
+ * character window; every record is handed out as a {@link CharSequence} view onto
+ * that window. The window only grows if a single record does not fit into it, so
+ * memory use is bounded by the longest record rather than by the content size.
+ * <p>The returned {@code CharSequence} is only valid until the next call to
+ * {@link #readRecord()} or {@link #close()}; call {@code toString()} on it to retain
+ * the record. Malformed input is replaced, as with {@link java.io.InputStreamReader}.
+ * <pre class="code">
+ * RecordReader reader = new EncodedResource(resource, "UTF-8").lines();
+ * try {
+ *     CharSequence line;
+ *     while ((line = reader.readRecord()) != null) {
+ *         ...
+ *     }
+ * } finally {
+ *     reader.close();
+ * }
+ * </pre>
+ *
+ * @see EncodedResource#lines()
+ * @see EncodedResource#records(String)
+ */
+public class RecordReader implements Closeable {
+
+    private static final int INITIAL_WINDOW_SIZE = 8 * 1024;
+
+    private final ReadableByteChannel channel;
+
+    private final CharsetDecoder decoder;
+
+    private final String delimiter;
+
+    private final CharArraySequence record = new CharArraySequence();
+
+    private byte[] byteArray;
+
+    private ByteBuffer bytes;
+
+    private char[] chars = new char[INITIAL_WINDOW_SIZE];
+
+    private CharBuffer window = CharBuffer.wrap(this.chars);
+
+    /**
+     * Start of the not yet returned characters in the window.
+     */
+    private int start;
+
+    /**
+     * End of the decoded characters in the window.
+     */
+    private int end;
+
+    /**
+     * Position up to which the window has been searched for a delimiter.
+     */
+    private int scanned;
+
+    private boolean endOfInput;
+
+    private boolean finished;
+
+    /**
+     * Create a new {@code RecordReader} that splits the content of the given
+     * channel into lines terminated by "\n" or "\r\n".
+     *
+     * @param channel the channel to read from; closed along with this reader
+     * @param charset the charset to decode the content with
+     */
+    public RecordReader(ReadableByteChannel channel, Charset charset) {
+        this(channel, charset, null);
+    }
+
+    /**
+     * Create a new {@code RecordReader} that splits the content of the given
+     * channel into records separated by the given delimiter.
+     *
+     * @param channel   the channel to read from; closed along with this reader
+     * @param charset   the charset to decode the content with
+     * @param delimiter the record delimiter, or {@code null} to split into lines
+     */
+    public RecordReader(ReadableByteChannel channel, Charset charset, String delimiter) {
+        Verify.notNull(channel, "ReadableByteChannel must not be null");
+        Verify.notNull(charset, "Charset must not be null");
+        Verify.verify(delimiter == null || delimiter.length() > 0, "Delimiter must not be empty");
+        this.channel = channel;
+        this.decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+                               .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.delimiter = delimiter;
+        this.byteArray = BufferPool.acquireHeap();
+        this.bytes = ByteBuffer.wrap(this.byteArray);
+        this.bytes.flip();
+    }
+
+    /**
+     * Read the next record, without its delimiter. An empty content, or a delimiter
+     * at the very end of the content, does not yield a trailing empty record.
+     *
+     * @return a view of the next record, valid until the next call to this method,
+     * or {@code null} if the end of the content has been reached
+     *
+     * @throws IOException if reading from the channel failed
+     */
+    public CharSequence readRecord() throws IOException {
+        Verify.verify(this.byteArray != null, "RecordReader has been closed");
+        while (true) {
+            int index = findDelimiter();
+            if (index >= 0) {
+                int length = index - this.start;
+                int next = index + (this.delimiter != null ? this.delimiter.length() : 1);
+                if (this.delimiter == null && length > 0 && this.chars[index - 1] == '\r') {
+                    length--;
+                }
+                this.record.set(this.chars, this.start, length);
+                this.start = next;
+                this.scanned = next;
+                return this.record;
+            }
+            if (!fill()) {
+                if (this.start == this.end) {
+                    return null;
+                }
+                this.record.set(this.chars, this.start, this.end - this.start);
+                this.start = this.end;
+                this.scanned = this.end;
+                return this.record;
+            }
+        }
+    }
+
+    /**
+     * This implementation closes the underlying channel and returns the
+     * byte buffer to the {@link BufferPool}.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.byteArray != null) {
+            BufferPool.release(this.byteArray);
+            this.byteArray = null;
+            this.bytes = null;
+        }
+        this.channel.close();
+    }
+
+    private int findDelimiter() {
+        if (this.delimiter == null) {
+            for (int i = this.scanned; i < this.end; i++) {
+                if (this.chars[i] == '\n') {
+                    return i;
+                }
+            }
+            this.scanned = this.end;
+            return -1;
+        }
+        char first = this.delimiter.charAt(0);
+        int length = this.delimiter.length();
+        int last = this.end - length;
+        for (int i = this.scanned; i <= last; i++) {
+            if (this.chars[i] == first && matchesDelimiter(i + 1)) {
+                return i;
+            }
+        }
+        this.scanned = Math.max(this.scanned, last + 1);
+        return -1;
+    }
+
+    private boolean matchesDelimiter(int index) {
+        for (int i = 1; i < this.delimiter.length(); i++, index++) {
+            if (this.chars[index] != this.delimiter.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decode more characters into the window, compacting or growing it as needed.
+     *
+     * @return whether any characters were added
+     */
+    private boolean fill() throws IOException {
+        if (this.finished) {
+            return false;
+        }
+        makeRoom();
+        this.window.limit(this.chars.length).position(this.end);
+        while (this.window.position() == this.end && !this.finished) {
+            CoderResult result = this.decoder.decode(this.bytes, this.window, this.endOfInput);
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                break;
+            }
+            if (this.endOfInput) {
+                this.decoder.flush(this.window);
+                this.finished = true;
+            } else {
+                this.bytes.compact();
+                if (this.channel.read(this.bytes) < 0) {
+                    this.endOfInput = true;
+                }
+                this.bytes.flip();
+            }
+        }
+        boolean filled = (this.window.position() > this.end);
+        this.end = this.window.position();
+        return filled;
+    }
+
+    private void makeRoom() {
+        if (this.start > 0) {
+            System.arraycopy(this.chars, this.start, this.chars, 0, this.end - this.start);
+            this.end -= this.start;
+            this.scanned -= this.start;
+            this.start = 0;
+        }
+        // Leave room for at least a surrogate pair
+        if (this.chars.length - this.end < 2) {
+            this.chars = Arrays.copyOf(this.chars, this.chars.length * 2);
+            this.window = CharBuffer.wrap(this.chars);
+        }
+    }
+
+}
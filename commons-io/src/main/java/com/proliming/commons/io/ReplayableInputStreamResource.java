@@ -0,0 +1,363 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * {@link Resource} implementation for a given {@link InputStream} that, unlike
+ * {@link InputStreamResource}, can be read any number of times.
+ * <p/>
+ * <p>The source stream is consumed lazily: content is captured as readers pull it,
+ * so the first read streams through without waiting for the whole source. Captured
+ * content is held in memory up to a threshold; beyond that, it is spilled to a
+ * temporary file, so large content such as uploads never occupies more than the
+ * threshold on the heap. Every {@link #getInputStream()} call returns an independent
+ * stream starting at the beginning of the content; streams may be read concurrently.
+ * Captured content is served to concurrent streams without locking, through positional
+ * reads in the case of a temporary file; only pulling new content from the source is
+ * serialized.
+ * <p>Call {@link #close()} once the resource is no longer needed, to close the source
+ * stream and delete the temporary file, if any.
+ *
+ * @see InputStreamResource
+ */
+public class ReplayableInputStreamResource extends AbstractResource implements Closeable {
+
+    /**
+     * Default number of bytes held in memory before spilling to disk: 1 MB.
+     */
+    public static final int DEFAULT_MEMORY_THRESHOLD = 1024 * 1024;
+
+    private static final int INITIAL_MEMORY_SIZE = 8 * 1024;
+
+    private final InputStream source;
+
+    private final String description;
+
+    private final int memoryThreshold;
+
+    private final File spillDirectory;
+
+    private volatile byte[] memory = new byte[0];
+
+    private File spillFile;
+
+    private volatile FileChannel spillChannel;
+
+    private volatile long captured;
+
+    private volatile boolean complete;
+
+    private volatile boolean closed;
+
+    /**
+     * Create a new ReplayableInputStreamResource with the default memory threshold,
+     * spilling to the default temporary directory.
+     *
+     * @param source the InputStream to capture
+     */
+    public ReplayableInputStreamResource(InputStream source) {
+        this(source, "resource loaded through InputStream");
+    }
+
+    /**
+     * Create a new ReplayableInputStreamResource with the default memory threshold,
+     * spilling to the default temporary directory.
+     *
+     * @param source      the InputStream to capture
+     * @param description where the InputStream comes from
+     */
+    public ReplayableInputStreamResource(InputStream source, String description) {
+        this(source, description, DEFAULT_MEMORY_THRESHOLD, null);
+    }
+
+    /**
+     * Create a new ReplayableInputStreamResource.
+     *
+     * @param source          the InputStream to capture
+     * @param description     where the InputStream comes from
+     * @param memoryThreshold the number of bytes to hold in memory before spilling to disk
+     * @param spillDirectory  the directory to create the temporary file in,
+     *                        or {@code null} for the default temporary directory
+     */
+    public ReplayableInputStreamResource(InputStream source, String description, int memoryThreshold,
+                                         File spillDirectory) {
+        Verify.notNull(source, "InputStream must not be null");
+        Verify.verify(memoryThreshold >= 0, "Memory threshold must not be negative: %s", memoryThreshold);
+        this.source = source;
+        this.description = (description != null ? description : "");
+        this.memoryThreshold = memoryThreshold;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * This implementation always returns {@code true}.
+     */
+    @Override
+    public boolean exists() {
+        return true;
+    }
+
+    /**
+     * This implementation returns a new stream over the content on every call,
+     * capturing content from the source as needed.
+     */
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (this.closed) {
+            throw new IOException(getDescription() + " has been closed");
+        }
+        return new ReplayInputStream();
+    }
+
+    /**
+     * This implementation captures the remaining source content, if any,
+     * and returns the total size of the content.
+     */
+    @Override
+    public long contentLength() throws IOException {
+        byte[] buffer = new byte[INITIAL_MEMORY_SIZE];
+        while (!this.complete) {
+            read(this.captured, buffer, 0, buffer.length);
+        }
+        return this.captured;
+    }
+
+    /**
+     * Return whether the content is currently spilled to a temporary file.
+     */
+    public synchronized boolean isSpilled() {
+        return (this.spillFile != null);
+    }
+
+    /**
+     * Close the source stream and delete the temporary file, if any.
+     * Streams obtained before fail on subsequent reads.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.memory = null;
+        try {
+            this.source.close();
+        } finally {
+            if (this.spillChannel != null) {
+                try {
+                    this.spillChannel.close();
+                } finally {
+                    Files.deleteIfExists(this.spillFile.toPath());
+                }
+            }
+        }
+    }
+
+    /**
+     * This implementation returns a description that includes the passed-in
+     * description, if any.
+     */
+    @Override
+    public String getDescription() {
+        return "Replayable InputStream resource [" + this.description + "]";
+    }
+
+    /**
+     * This implementation compares the underlying InputStream.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return (obj == this ||
+                        (obj instanceof ReplayableInputStreamResource &&
+                                 ((ReplayableInputStreamResource) obj).source.equals(this.source)));
+    }
+
+    /**
+     * This implementation returns the hash code of the underlying InputStream.
+     */
+    @Override
+    public int hashCode() {
+        return this.source.hashCode();
+    }
+
+    /**
+     * Read content at the given position: from the captured content if available,
+     * otherwise from the source, capturing what has been read. Only the latter
+     * locks this resource.
+     */
+    private int read(long position, byte[] b, int off, int len) throws IOException {
+        if (this.closed) {
+            throw new IOException(getDescription() + " has been closed");
+        }
+        if (position < this.captured) {
+            return readCaptured(position, b, off, len);
+        }
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException(getDescription() + " has been closed");
+            }
+            if (position < this.captured) {
+                // Captured by another stream while waiting for the lock
+                return readCaptured(position, b, off, len);
+            }
+            if (this.complete) {
+                return -1;
+            }
+            int count = this.source.read(b, off, len);
+            if (count < 0) {
+                this.complete = true;
+                return -1;
+            }
+            capture(b, off, count);
+            return count;
+        }
+    }
+
+    /**
+     * Read captured content at the given position. Content is published by the write
+     * to {@code captured}, after the memory buffer has been filled or replaced and
+     * after the spill file has been written, so reading the captured size first makes
+     * the content up to that size visible, in either the memory buffer that is then
+     * current or the spill file.
+     */
+    private int readCaptured(long position, byte[] b, int off, int len) throws IOException {
+        int count = (int) Math.min(len, this.captured - position);
+        byte[] memory = this.memory;
+        if (memory != null) {
+            System.arraycopy(memory, (int) position, b, off, count);
+            return count;
+        }
+        FileChannel channel = this.spillChannel;
+        if (channel == null) {
+            throw new IOException(getDescription() + " has been closed");
+        }
+        ByteBuffer target = ByteBuffer.wrap(b, off, count);
+        while (target.hasRemaining()) {
+            if (channel.read(target, position + target.position() - off) < 0) {
+                throw new IOException("Unexpected end of spill file " + this.spillFile);
+            }
+        }
+        return count;
+    }
+
+    private void capture(byte[] b, int off, int len) throws IOException {
+        if (this.spillChannel == null && this.captured + len > this.memoryThreshold) {
+            spill();
+        }
+        if (this.spillChannel != null) {
+            ByteBuffer source = ByteBuffer.wrap(b, off, len);
+            while (source.hasRemaining()) {
+                this.spillChannel.write(source, this.captured + source.position() - off);
+            }
+        } else {
+            int required = (int) this.captured + len;
+            if (required > this.memory.length) {
+                int newLength = Math.max(INITIAL_MEMORY_SIZE, this.memory.length * 2);
+                this.memory = Arrays.copyOf(this.memory, Math.min(Math.max(newLength, required),
+                        this.memoryThreshold));
+            }
+            System.arraycopy(b, off, this.memory, (int) this.captured, len);
+        }
+        this.captured += len;
+    }
+
+    private void spill() throws IOException {
+        File file = File.createTempFile("replay", ".tmp", this.spillDirectory);
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+            ByteBuffer content = ByteBuffer.wrap(this.memory, 0, (int) this.captured);
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+        } catch (IOException ex) {
+            if (channel != null) {
+                channel.close();
+            }
+            file.delete();
+            throw ex;
+        }
+        this.spillFile = file;
+        this.spillChannel = channel;
+        this.memory = null;
+    }
+
+    /**
+     * Independent stream over the content, starting at the beginning.
+     */
+    private class ReplayInputStream extends InputStream {
+
+        private final byte[] single = new byte[1];
+
+        private long position;
+
+        private long mark;
+
+        @Override
+        public int read() throws IOException {
+            return (read(this.single, 0, 1) < 0 ? -1 : this.single[0] & 0xFF);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            if (len == 0) {
+                return 0;
+            }
+            int count = ReplayableInputStreamResource.this.read(this.position, b, off, len);
+            if (count > 0) {
+                this.position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, captured - this.position));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return true;
+        }
+
+        @Override
+        public void mark(int readLimit) {
+            this.mark = this.position;
+        }
+
+        @Override
+        public void reset() {
+            this.position = this.mark;
+        }
+    }
+
+}
@@ -20,6 +20,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.channels.ReadableByteChannel;
 
 /**
  * Interface for a resource descriptor that abstracts from the actual
@@ -34,6 +35,7 @@ import java.net.URL;
  * @see #getURI()
  * @see #getFile()
  * @see WritableResource
+ * @see MappedResource
  * @see ContextResource
  * @see FileSystemResource
  * @see ClassPathResource
@@ -72,6 +74,20 @@ public interface Resource extends InputStreamSource {
      */
     boolean isOpen();
 
+    /**
+     * Return a {@link ReadableByteChannel}.
+     * <p>It is expected that each call creates a <i>fresh</i> channel.
+     * <p>File-based implementations return a {@link java.nio.channels.FileChannel},
+     * allowing for zero-copy transfers and positional reads.
+     *
+     * @return the byte channel for the underlying resource (must not be {@code null})
+     *
+     * @throws java.io.FileNotFoundException if the underlying resource doesn't exist
+     * @throws IOException                   if the content channel could not be opened
+     * @see #getInputStream()
+     */
+    ReadableByteChannel readableChannel() throws IOException;
+
     /**
      * Return a URL handle for this resource.
      *
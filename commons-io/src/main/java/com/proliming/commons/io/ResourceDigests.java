@@ -0,0 +1,305 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import com.proliming.commons.utils.BufferPool;
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Computes content digests of resources, backing {@link AbstractResource#digest(String)}.
+ * <p/>
+ * <p>Content is streamed once per computation, from the memory mapping for
+ * {@link MappedResource MappedResources}. Results are cached per resource type, URI and
+ * algorithm for resources with a known last-modified timestamp and URI, and reused for
+ * as long as the timestamp and the content length stay unchanged. The cache holds no
+ * references to the resources themselves, so it does not keep their content or
+ * ClassLoaders reachable.
+ * <p>Supports all {@link MessageDigest} algorithms of the JVM, plus "CRC32" and - on
+ * JVMs providing {@code java.util.zip.CRC32C} - "CRC32C", both yielding four bytes
+ * in big-endian order.
+ */
+abstract class ResourceDigests {
+
+    private static final int MAX_CACHED_DIGESTS = 1024;
+
+    private static final Class<?> crc32cClass = findCrc32cClass();
+
+    private static final Map<DigestKey, CachedDigest> digestCache =
+            new LinkedHashMap<DigestKey, CachedDigest>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<DigestKey, CachedDigest> eldest) {
+                    return size() > MAX_CACHED_DIGESTS;
+                }
+            };
+
+    /**
+     * Compute the digest of the given resource's content, or return the cached one
+     * if the resource is unchanged since.
+     *
+     * @param resource  the resource to digest
+     * @param algorithm the digest algorithm
+     *
+     * @return the digest; a fresh array on every call
+     *
+     * @throws IOException              if the content cannot be read
+     * @throws IllegalArgumentException if the algorithm is not supported
+     */
+    static byte[] digest(Resource resource, String algorithm) throws IOException {
+        Verify.notNull(algorithm, "Algorithm must not be null");
+        Digester digester = createDigester(algorithm);
+        // Determine the version before reading, so that concurrent modifications
+        // cause a mismatch on the next call rather than a stale cache entry
+        long lastModified = determineLastModified(resource);
+        DigestKey key = (lastModified > 0 ? createKey(resource, algorithm) : null);
+        long length = (key != null ? resource.contentLength() : -1);
+        if (key != null) {
+            CachedDigest cached;
+            synchronized (digestCache) {
+                cached = digestCache.get(key);
+            }
+            if (cached != null && cached.lastModified == lastModified && cached.length == length) {
+                return cached.digest.clone();
+            }
+        }
+        byte[] digest = computeDigest(resource, digester);
+        if (key != null) {
+            synchronized (digestCache) {
+                digestCache.put(key, new CachedDigest(digest, lastModified, length));
+            }
+        }
+        return digest.clone();
+    }
+
+    /**
+     * Render the given bytes as lower-case hexadecimal string.
+     */
+    static String toHexString(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return hex.toString();
+    }
+
+    private static long determineLastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException ex) {
+            // No timestamp available (e.g. byte array or stream content): do not cache
+            return 0;
+        }
+    }
+
+    private static DigestKey createKey(Resource resource, String algorithm) {
+        try {
+            return new DigestKey(resource.getClass().getName(), resource.getURI().toString(), algorithm);
+        } catch (IOException ex) {
+            // Not addressable by URI: do not cache
+            return null;
+        }
+    }
+
+    private static byte[] computeDigest(Resource resource, Digester digester) throws IOException {
+        if (resource instanceof MappedResource) {
+            for (MappedByteBuffer region : ((MappedResource) resource).getMappedRegions()) {
+                digester.update(region);
+            }
+            return digester.finish();
+        }
+        InputStream in = resource.getInputStream();
+        Verify.notNull(in, "resource input stream must not be null");
+        byte[] buffer = BufferPool.acquireHeap();
+        try {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digester.update(buffer, 0, read);
+            }
+            return digester.finish();
+        } finally {
+            BufferPool.release(buffer);
+            in.close();
+        }
+    }
+
+    private static Digester createDigester(String algorithm) {
+        if ("CRC32".equalsIgnoreCase(algorithm)) {
+            return new ChecksumDigester(new CRC32());
+        }
+        if ("CRC32C".equalsIgnoreCase(algorithm)) {
+            if (crc32cClass == null) {
+                throw new IllegalArgumentException("CRC32C is not supported by this JVM");
+            }
+            try {
+                return new ChecksumDigester((Checksum) crc32cClass.getDeclaredConstructor().newInstance());
+            } catch (Exception ex) {
+                throw new IllegalArgumentException("Failed to instantiate CRC32C", ex);
+            }
+        }
+        try {
+            return new MessageDigestDigester(MessageDigest.getInstance(algorithm));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalArgumentException("Unsupported digest algorithm: " + algorithm, ex);
+        }
+    }
+
+    private static Class<?> findCrc32cClass() {
+        try {
+            return Class.forName("java.util.zip.CRC32C");
+        } catch (ClassNotFoundException ex) {
+            // Only available on Java 9 and higher
+            return null;
+        }
+    }
+
+    /**
+     * Common interface for message digests and checksums.
+     */
+    private interface Digester {
+
+        void update(byte[] bytes, int offset, int length);
+
+        void update(ByteBuffer buffer);
+
+        byte[] finish();
+    }
+
+    private static class MessageDigestDigester implements Digester {
+
+        private final MessageDigest messageDigest;
+
+        public MessageDigestDigester(MessageDigest messageDigest) {
+            this.messageDigest = messageDigest;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            this.messageDigest.update(bytes, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            this.messageDigest.update(buffer);
+        }
+
+        @Override
+        public byte[] finish() {
+            return this.messageDigest.digest();
+        }
+    }
+
+    private static class ChecksumDigester implements Digester {
+
+        private final Checksum checksum;
+
+        public ChecksumDigester(Checksum checksum) {
+            this.checksum = checksum;
+        }
+
+        @Override
+        public void update(byte[] bytes, int offset, int length) {
+            this.checksum.update(bytes, offset, length);
+        }
+
+        @Override
+        public void update(ByteBuffer buffer) {
+            if (this.checksum instanceof CRC32) {
+                ((CRC32) this.checksum).update(buffer);
+                return;
+            }
+            byte[] chunk = BufferPool.acquireHeap();
+            try {
+                while (buffer.hasRemaining()) {
+                    int length = Math.min(chunk.length, buffer.remaining());
+                    buffer.get(chunk, 0, length);
+                    this.checksum.update(chunk, 0, length);
+                }
+            } finally {
+                BufferPool.release(chunk);
+            }
+        }
+
+        @Override
+        public byte[] finish() {
+            long value = this.checksum.getValue();
+            return new byte[] {(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+
+    /**
+     * Cache key of a resource's digest. The resource type is part of the key since
+     * decorators such as {@link CompressedResource} share the URI of their target.
+     */
+    private static final class DigestKey {
+
+        private final String resourceType;
+
+        private final String uri;
+
+        private final String algorithm;
+
+        public DigestKey(String resourceType, String uri, String algorithm) {
+            this.resourceType = resourceType;
+            this.uri = uri;
+            this.algorithm = algorithm.toUpperCase();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof DigestKey)) {
+                return false;
+            }
+            DigestKey otherKey = (DigestKey) other;
+            return (this.uri.equals(otherKey.uri) && this.resourceType.equals(otherKey.resourceType) &&
+                            this.algorithm.equals(otherKey.algorithm));
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.uri.hashCode() * 29 + this.resourceType.hashCode()) * 29 + this.algorithm.hashCode();
+        }
+    }
+
+    private static final class CachedDigest {
+
+        private final byte[] digest;
+
+        private final long lastModified;
+
+        private final long length;
+
+        public CachedDigest(byte[] digest, long lastModified, long length) {
+            this.digest = digest;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+
+}
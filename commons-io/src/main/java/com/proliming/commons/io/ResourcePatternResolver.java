@@ -0,0 +1,60 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.IOException;
+
+/**
+ * Strategy interface for resolving a location pattern (for example,
+ * an Ant-style path pattern) into Resource objects.
+ * <p/>
+ * <p>This is an extension to the {@link ResourceLoader} interface.
+ * <p>Supports a new "classpath*:" pseudo-URL prefix for all matching
+ * resources from the class path: for example "classpath*:META-INF/*.xml"
+ * finds all XML files in the META-INF directories of all jar files and
+ * class path directories.
+ *
+ * @see IndexedResourcePatternResolver
+ * @see com.proliming.commons.utils.AntPathMatcher
+ */
+public interface ResourcePatternResolver extends ResourceLoader {
+
+    /**
+     * Pseudo URL prefix for all matching resources from the class path: "classpath*:"
+     * This differs from ResourceLoader's classpath URL prefix in that it
+     * retrieves all matching resources for a given name (e.g. "/beans.xml"),
+     * for example in the root of all deployed JAR files.
+     *
+     * @see ResourceLoader#CLASSPATH_URL_PREFIX
+     */
+    String CLASSPATH_ALL_URL_PREFIX = "classpath*:";
+
+    /**
+     * Resolve the given location pattern into Resource objects.
+     * <p>Overlapping resource entries that point to the same physical
+     * resource should be avoided, as far as possible. The result should
+     * have set semantics.
+     *
+     * @param locationPattern the location pattern to resolve
+     *
+     * @return the corresponding Resource objects
+     *
+     * @throws IOException in case of I/O errors
+     */
+    Resource[] getResources(String locationPattern) throws IOException;
+
+}
@@ -0,0 +1,521 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.proliming.commons.utils.Verify;
+
+/**
+ * Notifies listeners about changes to {@link Resource Resources}, without polling
+ * where the file system can report changes itself.
+ * <p/>
+ * <p>Resources backed by a file in the default file system - {@link FileSystemResource},
+ * {@link PathResource}, and class path or URL resources that resolve to a file - are
+ * watched through a {@link WatchService} on their parent directory. Resources inside a
+ * jar file are watched through the jar file itself. Bursts of file events, as caused by
+ * editors or deployment tools rewriting a file, are debounced into a single notification
+ * once the file has been quiet for the debounce delay.
+ * <p>All other resources, e.g. HTTP URLs, fall back to polling
+ * {@link Resource#lastModified()}. The poll interval adapts: it doubles, up to the
+ * maximum poll interval, for every poll that finds the resource unchanged, and is reset
+ * to the minimum once a change is detected. Polls run on a small pool of separate
+ * threads, so that a slow resource delays neither other polls nor notifications.
+ * <p>Listeners are called on a single internal notification thread and should return
+ * quickly. Resources are matched by equality, so equal resources share registrations.
+ *
+ * @see ChangeListener
+ */
+public class ResourceWatcher implements Closeable {
+
+    /**
+     * Default delay after the last file event before listeners are notified: 100 ms.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+
+    /**
+     * Default minimum interval between polls of non-file resources: 1 second.
+     */
+    public static final long DEFAULT_MIN_POLL_INTERVAL = 1000;
+
+    /**
+     * Default maximum interval between polls of non-file resources: 30 seconds.
+     */
+    public static final long DEFAULT_MAX_POLL_INTERVAL = 30000;
+
+    private static final long NON_EXISTENT = -1;
+
+    private static final int POLL_THREADS = 4;
+
+    private final long debounceMillis;
+
+    private final long minPollInterval;
+
+    private final long maxPollInterval;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ExecutorService pollExecutor;
+
+    private final Map<Path, WatchKey> directoryKeys = new HashMap<Path, WatchKey>();
+
+    private final Map<Path, List<Registration>> fileRegistrations = new HashMap<Path, List<Registration>>();
+
+    private final List<Registration> pollRegistrations = new ArrayList<Registration>();
+
+    private WatchService watchService;
+
+    private boolean closed;
+
+    /**
+     * Create a new {@code ResourceWatcher} with default debounce delay and poll intervals.
+     */
+    public ResourceWatcher() {
+        this(DEFAULT_DEBOUNCE_MILLIS, DEFAULT_MIN_POLL_INTERVAL, DEFAULT_MAX_POLL_INTERVAL);
+    }
+
+    /**
+     * Create a new {@code ResourceWatcher}.
+     *
+     * @param debounceMillis  the delay in milliseconds after the last event for a watched
+     *                        file before its listeners are notified
+     * @param minPollInterval the interval in milliseconds between polls of a non-file
+     *                        resource right after registration or a detected change
+     * @param maxPollInterval the interval in milliseconds that polls of an unchanged
+     *                        non-file resource back off to
+     */
+    public ResourceWatcher(long debounceMillis, long minPollInterval, long maxPollInterval) {
+        Verify.verify(debounceMillis >= 0, "Debounce delay must not be negative: %s", debounceMillis);
+        Verify.verify(minPollInterval > 0, "Minimum poll interval must be positive: %s", minPollInterval);
+        Verify.verify(maxPollInterval >= minPollInterval,
+                "Maximum poll interval must not be less than the minimum: %s", maxPollInterval);
+        this.debounceMillis = debounceMillis;
+        this.minPollInterval = minPollInterval;
+        this.maxPollInterval = maxPollInterval;
+        ScheduledThreadPoolExecutor scheduler =
+                new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory("resource-watcher"));
+        scheduler.setRemoveOnCancelPolicy(true);
+        this.scheduler = scheduler;
+        ThreadPoolExecutor pollExecutor = new ThreadPoolExecutor(POLL_THREADS, POLL_THREADS, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory("resource-watcher-poll"));
+        pollExecutor.allowCoreThreadTimeOut(true);
+        this.pollExecutor = pollExecutor;
+    }
+
+    /**
+     * Start watching the given resource, notifying the given listener about changes.
+     *
+     * @param resource the resource to watch
+     * @param listener the listener to notify
+     *
+     * @throws IOException if the resource's directory cannot be registered for watching
+     */
+    public void watch(Resource resource, ChangeListener listener) throws IOException {
+        Verify.notNull(resource, "Resource must not be null");
+        Verify.notNull(listener, "ChangeListener must not be null");
+        Path file = resolveWatchedFile(resource);
+        Path directory = (file != null ? file.getParent() : null);
+        if (directory != null && directory.toFile().isDirectory()) {
+            synchronized (this) {
+                Verify.verify(!this.closed, "ResourceWatcher has been closed");
+                registerDirectory(directory);
+                Registration registration = new Registration(resource, listener, file);
+                List<Registration> registrations = this.fileRegistrations.get(file);
+                if (registrations == null) {
+                    registrations = new ArrayList<Registration>();
+                    this.fileRegistrations.put(file, registrations);
+                }
+                registrations.add(registration);
+            }
+            return;
+        }
+        // Outside the lock: may be a remote request
+        long lastModified = determineLastModified(resource);
+        synchronized (this) {
+            Verify.verify(!this.closed, "ResourceWatcher has been closed");
+            Registration registration = new Registration(resource, listener, null);
+            registration.lastModified = lastModified;
+            registration.pollInterval = this.minPollInterval;
+            this.pollRegistrations.add(registration);
+            schedulePoll(registration);
+        }
+    }
+
+    /**
+     * Stop notifying the given listener about changes to the given resource.
+     *
+     * @param resource the watched resource
+     * @param listener the listener to remove
+     */
+    public synchronized void unwatch(Resource resource, ChangeListener listener) {
+        for (Iterator<List<Registration>> it = this.fileRegistrations.values().iterator(); it.hasNext(); ) {
+            List<Registration> registrations = it.next();
+            removeRegistrations(registrations, resource, listener);
+            if (registrations.isEmpty()) {
+                it.remove();
+            }
+        }
+        removeRegistrations(this.pollRegistrations, resource, listener);
+        for (Iterator<Map.Entry<Path, WatchKey>> it = this.directoryKeys.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, WatchKey> entry = it.next();
+            if (!hasFileRegistrations(entry.getKey())) {
+                entry.getValue().cancel();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Stop watching all resources and release the watch service and threads.
+     */
+    @Override
+    public void close() throws IOException {
+        WatchService watchService;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            watchService = this.watchService;
+            this.fileRegistrations.clear();
+            this.pollRegistrations.clear();
+            this.directoryKeys.clear();
+        }
+        this.scheduler.shutdownNow();
+        this.pollExecutor.shutdownNow();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Determine the file whose changes signal changes of the given resource,
+     * or {@code null} if the resource needs to be polled.
+     */
+    private static Path resolveWatchedFile(Resource resource) {
+        try {
+            if (resource instanceof FileSystemResource || resource instanceof PathResource) {
+                return resource.getFile().toPath().toAbsolutePath().normalize();
+            }
+            if (resource instanceof AbstractFileResolvingResource) {
+                // The file itself, or the jar file containing the resource
+                return ((AbstractFileResolvingResource) resource).getFileForLastModifiedCheck().toPath()
+                               .toAbsolutePath().normalize();
+            }
+        } catch (IOException ex) {
+            // Not resolvable in the default file system - poll it
+        } catch (UnsupportedOperationException ex) {
+            // Not resolvable in the default file system - poll it
+        }
+        return null;
+    }
+
+    private void registerDirectory(Path directory) throws IOException {
+        if (this.directoryKeys.containsKey(directory)) {
+            return;
+        }
+        if (this.watchService == null) {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            Thread eventThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    processEvents();
+                }
+            }, "resource-watcher-events");
+            eventThread.setDaemon(true);
+            eventThread.start();
+        }
+        WatchKey key = directory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        this.directoryKeys.put(directory, key);
+    }
+
+    private void processEvents() {
+        WatchService watchService;
+        synchronized (this) {
+            watchService = this.watchService;
+        }
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (ClosedWatchServiceException ex) {
+                return;
+            } catch (InterruptedException ex) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            synchronized (this) {
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Events were lost: treat every watched file in the directory as changed
+                        for (Map.Entry<Path, List<Registration>> entry : this.fileRegistrations.entrySet()) {
+                            if (directory.equals(entry.getKey().getParent())) {
+                                scheduleNotification(entry.getValue());
+                            }
+                        }
+                    } else {
+                        List<Registration> registrations =
+                                this.fileRegistrations.get(directory.resolve((Path) event.context()));
+                        if (registrations != null) {
+                            scheduleNotification(registrations);
+                        }
+                    }
+                }
+                if (!key.reset()) {
+                    directoryLost(directory);
+                }
+            }
+        }
+    }
+
+    /**
+     * The watch key of the given directory has become invalid, e.g. because the
+     * directory was deleted: notify on the notification thread and fall back to
+     * polling for its files.
+     */
+    private void directoryLost(Path directory) {
+        this.directoryKeys.remove(directory);
+        for (Iterator<Map.Entry<Path, List<Registration>>> it = this.fileRegistrations.entrySet().iterator();
+             it.hasNext(); ) {
+            Map.Entry<Path, List<Registration>> entry = it.next();
+            if (directory.equals(entry.getKey().getParent())) {
+                it.remove();
+                for (Registration registration : entry.getValue()) {
+                    Registration pollRegistration = new Registration(registration.resource, registration.listener,
+                                                                            null);
+                    pollRegistration.lastModified = NON_EXISTENT;
+                    pollRegistration.pollInterval = this.minPollInterval;
+                    this.pollRegistrations.add(pollRegistration);
+                    submitNotification(pollRegistration);
+                    schedulePoll(pollRegistration);
+                }
+            }
+        }
+    }
+
+    private void scheduleNotification(List<Registration> registrations) {
+        if (this.closed) {
+            return;
+        }
+        for (final Registration registration : registrations) {
+            if (registration.pending != null) {
+                registration.pending.cancel(false);
+            }
+            registration.pending = this.scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (ResourceWatcher.this) {
+                        registration.pending = null;
+                        if (!isRegistered(registration)) {
+                            return;
+                        }
+                    }
+                    notifyListener(registration);
+                }
+            }, this.debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void submitNotification(final Registration registration) {
+        if (this.closed) {
+            return;
+        }
+        this.scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (ResourceWatcher.this) {
+                    if (!isRegistered(registration)) {
+                        return;
+                    }
+                }
+                notifyListener(registration);
+            }
+        });
+    }
+
+    private void schedulePoll(final Registration registration) {
+        if (this.closed) {
+            return;
+        }
+        final Runnable pollTask = new Runnable() {
+            @Override
+            public void run() {
+                poll(registration);
+            }
+        };
+        registration.pending = this.scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pollExecutor.execute(pollTask);
+                } catch (RejectedExecutionException ex) {
+                    // Closed in the meantime
+                }
+            }
+        }, registration.pollInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void poll(Registration registration) {
+        synchronized (this) {
+            if (!this.pollRegistrations.contains(registration)) {
+                return;
+            }
+        }
+        long lastModified = determineLastModified(registration.resource);
+        boolean changed = (lastModified != registration.lastModified);
+        if (changed) {
+            registration.lastModified = lastModified;
+            registration.pollInterval = this.minPollInterval;
+        } else {
+            registration.pollInterval = Math.min(registration.pollInterval * 2, this.maxPollInterval);
+        }
+        synchronized (this) {
+            if (this.pollRegistrations.contains(registration)) {
+                if (changed) {
+                    submitNotification(registration);
+                }
+                schedulePoll(registration);
+            }
+        }
+    }
+
+    private static long determineLastModified(Resource resource) {
+        try {
+            return (resource.exists() ? resource.lastModified() : NON_EXISTENT);
+        } catch (IOException ex) {
+            return NON_EXISTENT;
+        }
+    }
+
+    private static void notifyListener(Registration registration) {
+        try {
+            registration.listener.resourceChanged(registration.resource);
+        } catch (RuntimeException ex) {
+            // Must not stop notifications for other resources
+        }
+    }
+
+    private boolean isRegistered(Registration registration) {
+        if (registration.file == null) {
+            return this.pollRegistrations.contains(registration);
+        }
+        List<Registration> registrations = this.fileRegistrations.get(registration.file);
+        return (registrations != null && registrations.contains(registration));
+    }
+
+    private boolean hasFileRegistrations(Path directory) {
+        for (Path file : this.fileRegistrations.keySet()) {
+            if (directory.equals(file.getParent())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void removeRegistrations(List<Registration> registrations, Resource resource,
+                                            ChangeListener listener) {
+        for (Iterator<Registration> it = registrations.iterator(); it.hasNext(); ) {
+            Registration registration = it.next();
+            if (registration.resource.equals(resource) && registration.listener == listener) {
+                if (registration.pending != null) {
+                    registration.pending.cancel(false);
+                }
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Callback interface for changes of a watched resource.
+     *
+     * @see ResourceWatcher#watch(Resource, ChangeListener)
+     */
+    public interface ChangeListener {
+
+        /**
+         * Called after the given resource has been modified, created or deleted.
+         *
+         * @param resource the changed resource, as passed to
+         *                 {@link ResourceWatcher#watch(Resource, ChangeListener)}
+         */
+        void resourceChanged(Resource resource);
+    }
+
+    /**
+     * A listener registered for a resource, either watched through its file or polled.
+     */
+    private static final class Registration {
+
+        private final Resource resource;
+
+        private final ChangeListener listener;
+
+        private final Path file;
+
+        private volatile ScheduledFuture<?> pending;
+
+        private volatile long lastModified;
+
+        private volatile long pollInterval;
+
+        public Registration(Resource resource, ChangeListener listener, Path file) {
+            this.resource = resource;
+            this.listener = listener;
+            this.file = file;
+        }
+    }
+
+    private static class DaemonThreadFactory implements ThreadFactory {
+
+        private final String threadName;
+
+        public DaemonThreadFactory(String threadName) {
+            this.threadName = threadName;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, this.threadName);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
@@ -159,7 +159,8 @@ public class UrlResource extends AbstractFileResolvingResource {
 
     /**
      * This implementation opens an InputStream for the given URL.
-     * <p>It sets the {@code useCaches} flag to {@code false},
+     * <p>Jar entries are read through the shared {@link JarFileCache}, if enabled.
+     * For all other URLs, it sets the {@code useCaches} flag to {@code false},
      * mainly to avoid jar file locking on Windows.
      *
      * @see java.net.URL#openConnection()
@@ -168,6 +169,13 @@ public class UrlResource extends AbstractFileResolvingResource {
      */
     @Override
     public InputStream getInputStream() throws IOException {
+        JarFileCache jarFileCache = JarFileCache.getSharedInstance();
+        if (jarFileCache != null && ResourceUtils.isJarURL(this.url)) {
+            InputStream is = jarFileCache.getInputStream(this.url);
+            if (is != null) {
+                return is;
+            }
+        }
         URLConnection con = this.url.openConnection();
         ResourceUtils.useCachesIfNecessary(con);
         try {
@@ -18,12 +18,16 @@ package com.proliming.commons.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Extended interface for a resource that supports writing to it.
- * Provides an {@link #getOutputStream() OutputStream accessor}.
+ * Provides an {@link #getOutputStream() OutputStream accessor}
+ * and a {@link #writableChannel() channel accessor}.
  *
  * @see java.io.OutputStream
+ * @see AtomicWritableResource
  */
 public interface WritableResource extends Resource {
 
@@ -49,4 +53,18 @@ public interface WritableResource extends Resource {
      */
     OutputStream getOutputStream() throws IOException;
 
+    /**
+     * Return a {@link WritableByteChannel} for the underlying resource,
+     * allowing to (over-)write its content.
+     * <p>It is expected that each call creates a <i>fresh</i> channel.
+     * <p>The default implementation returns {@link Channels#newChannel(OutputStream)}
+     * with the result of {@link #getOutputStream()}.
+     *
+     * @throws IOException if the channel could not be opened
+     * @see #getOutputStream()
+     */
+    default WritableByteChannel writableChannel() throws IOException {
+        return Channels.newChannel(getOutputStream());
+    }
+
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2002-2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.proliming.commons.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link HttpResourceCache} against an embedded HTTP server.
+ */
+public class HttpResourceCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String BODY = "cached body";
+
+    private static final String ETAG = "\"v1\"";
+
+    private final AtomicInteger fullResponses = new AtomicInteger();
+
+    private final AtomicInteger notModifiedResponses = new AtomicInteger();
+
+    private volatile String lastCustomHeader;
+
+    private HttpServer server;
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.server.createContext("/resource", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                lastCustomHeader = exchange.getRequestHeaders().getFirst("X-Custom");
+                if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    notModifiedResponses.incrementAndGet();
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_NOT_MODIFIED, -1);
+                    exchange.close();
+                    return;
+                }
+                fullResponses.incrementAndGet();
+                byte[] body = BODY.getBytes(UTF_8);
+                exchange.getResponseHeaders().set("ETag", ETAG);
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                    exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        this.server.createContext("/missing", new StatusHandler(HttpURLConnection.HTTP_NOT_FOUND));
+        this.server.createContext("/broken", new StatusHandler(HttpURLConnection.HTTP_INTERNAL_ERROR));
+        this.server.start();
+        this.directory = Files.createTempDirectory("http-cache").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        this.server.stop(0);
+        File[] files = this.directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        this.directory.delete();
+    }
+
+    @Test
+    public void freshResponseIsServedFromDisk() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 60000);
+        Resource resource = cache.getResource(url("/resource"));
+        assertEquals(BODY, read(resource));
+        assertEquals(BODY, read(resource));
+        assertEquals(1, this.fullResponses.get());
+        assertEquals(0, this.notModifiedResponses.get());
+    }
+
+    @Test
+    public void staleResponseIsRevalidated() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 0);
+        Resource resource = cache.getResource(url("/resource"));
+        assertEquals(BODY, read(resource));
+        assertEquals(BODY, read(resource));
+        assertEquals(BODY, read(resource));
+        assertEquals(1, this.fullResponses.get());
+        assertEquals(2, this.notModifiedResponses.get());
+    }
+
+    @Test
+    public void revalidationSurvivesRestart() throws IOException {
+        assertEquals(BODY, read(new HttpResourceCache(this.directory, 60000).getResource(url("/resource"))));
+        assertEquals(BODY, read(new HttpResourceCache(this.directory, 60000).getResource(url("/resource"))));
+        assertEquals(1, this.fullResponses.get());
+        assertEquals(1, this.notModifiedResponses.get());
+    }
+
+    @Test
+    public void metadataSharesCachedResponse() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 60000);
+        Resource resource = cache.getResource(url("/resource"));
+        assertTrue(resource.exists());
+        assertEquals(BODY.length(), resource.contentLength());
+        assertTrue(resource.exists());
+        assertEquals(1, this.fullResponses.get());
+    }
+
+    @Test
+    public void customizeConnectionAppliesToConditionalGet() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 0);
+        Resource resource = new CachingUrlResource(url("/resource"), cache) {
+            @Override
+            protected void customizeConnection(HttpURLConnection con) throws IOException {
+                super.customizeConnection(con);
+                con.setRequestProperty("X-Custom", "custom");
+            }
+        };
+        assertEquals(BODY, read(resource));
+        assertEquals("custom", this.lastCustomHeader);
+        this.lastCustomHeader = null;
+        assertEquals(BODY, read(resource));
+        assertEquals("custom", this.lastCustomHeader);
+        assertEquals(1, this.notModifiedResponses.get());
+    }
+
+    @Test
+    public void missingResource() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 60000);
+        Resource resource = cache.getResource(url("/missing"));
+        try {
+            read(resource);
+            fail("Should have thrown FileNotFoundException");
+        } catch (FileNotFoundException ex) {
+            // expected
+        }
+        assertFalse(resource.exists());
+    }
+
+    @Test
+    public void serverErrorIsNotCached() throws IOException {
+        HttpResourceCache cache = new HttpResourceCache(this.directory, 60000);
+        Resource resource = cache.getResource(url("/broken"));
+        for (int i = 0; i < 2; i++) {
+            try {
+                read(resource);
+                fail("Should have thrown IOException");
+            } catch (IOException ex) {
+                assertFalse(ex instanceof FileNotFoundException);
+            }
+        }
+        assertEquals(0, this.directory.list().length);
+    }
+
+    private URL url(String path) throws IOException {
+        return new URL("http://127.0.0.1:" + this.server.getAddress().getPort() + path);
+    }
+
+    private static String read(Resource resource) throws IOException {
+        InputStream in = resource.getInputStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class StatusHandler implements HttpHandler {
+
+        private final int status;
+
+        StatusHandler(int status) {
+            this.status = status;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            exchange.sendResponseHeaders(this.status, -1);
+            exchange.close();
+        }
+    }
+
+}
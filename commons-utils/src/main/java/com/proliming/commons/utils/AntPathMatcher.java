@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Path matcher for Ant-style path patterns.
+ * <p/>
+ * <p>The mapping matches URLs using the following rules:
+ * <ul>
+ * <li>{@code ?} matches one character (but not the path separator)</li>
+ * <li>{@code *} matches zero or more characters within a path segment</li>
+ * <li>{@code **} matches zero or more path segments</li>
+ * </ul>
+ * <p>Examples:
+ * <ul>
+ * <li>{@code com/t?st.jsp} - matches {@code com/test.jsp} but also
+ * {@code com/tast.jsp} or {@code com/txst.jsp}</li>
+ * <li>{@code com/*.jsp} - matches all {@code .jsp} files in the
+ * {@code com} directory</li>
+ * <li>{@code com/&#42;&#42;/test.jsp} - matches all {@code test.jsp}
+ * files underneath the {@code com} path</li>
+ * </ul>
+ * <p>Empty path segments, e.g. from leading or doubled separators, are ignored.
+ * Instances are thread-safe.
+ */
+public class AntPathMatcher {
+
+    /**
+     * Default path separator: "/"
+     */
+    public static final String DEFAULT_PATH_SEPARATOR = "/";
+
+    private static final String ANY_SEGMENTS = "**";
+
+    private final String pathSeparator;
+
+    /**
+     * Create a new AntPathMatcher using the {@link #DEFAULT_PATH_SEPARATOR}.
+     */
+    public AntPathMatcher() {
+        this(DEFAULT_PATH_SEPARATOR);
+    }
+
+    /**
+     * Create a new AntPathMatcher using the given path separator.
+     *
+     * @param pathSeparator the path separator to use, must not be {@code null}
+     */
+    public AntPathMatcher(String pathSeparator) {
+        Verify.notNull(pathSeparator, "Path separator must not be null");
+        this.pathSeparator = pathSeparator;
+    }
+
+    /**
+     * Return whether the given path contains pattern characters,
+     * i.e. needs to be matched rather than compared.
+     *
+     * @param path the path to check
+     */
+    public boolean isPattern(String path) {
+        return (path.indexOf('*') != -1 || path.indexOf('?') != -1);
+    }
+
+    /**
+     * Match the given {@code path} against the given {@code pattern}.
+     *
+     * @param pattern the pattern to match against
+     * @param path    the path to test
+     *
+     * @return {@code true} if the supplied {@code path} matched
+     */
+    public boolean match(String pattern, String path) {
+        return matchSegments(tokenize(pattern), 0, tokenize(path), 0);
+    }
+
+    /**
+     * Return the leading part of the given pattern that contains no pattern
+     * characters, up to and including the last path separator before the
+     * first pattern character. All paths matching the pattern start with it.
+     * <p>For example, {@code META-INF/spring/*.xml} yields {@code META-INF/spring/}.
+     *
+     * @param pattern the pattern to analyze
+     *
+     * @return the static prefix, possibly empty
+     */
+    public String getStaticPrefix(String pattern) {
+        if (!isPattern(pattern)) {
+            return pattern;
+        }
+        int wildcard = pattern.length();
+        int star = pattern.indexOf('*');
+        int question = pattern.indexOf('?');
+        if (star != -1) {
+            wildcard = star;
+        }
+        if (question != -1 && question < wildcard) {
+            wildcard = question;
+        }
+        int separator = pattern.lastIndexOf(this.pathSeparator, wildcard);
+        return (separator == -1 ? "" : pattern.substring(0, separator + this.pathSeparator.length()));
+    }
+
+    private String[] tokenize(String path) {
+        List<String> tokens = new ArrayList<String>();
+        int start = 0;
+        int separator;
+        while ((separator = path.indexOf(this.pathSeparator, start)) != -1) {
+            if (separator > start) {
+                tokens.add(path.substring(start, separator));
+            }
+            start = separator + this.pathSeparator.length();
+        }
+        if (start < path.length()) {
+            tokens.add(path.substring(start));
+        }
+        return tokens.toArray(new String[tokens.size()]);
+    }
+
+    private boolean matchSegments(String[] pattern, int patternIndex, String[] path, int pathIndex) {
+        while (patternIndex < pattern.length && !ANY_SEGMENTS.equals(pattern[patternIndex])) {
+            if (pathIndex >= path.length || !matchSegment(pattern[patternIndex], path[pathIndex])) {
+                return false;
+            }
+            patternIndex++;
+            pathIndex++;
+        }
+        if (patternIndex == pattern.length) {
+            return (pathIndex == path.length);
+        }
+        // Collapse consecutive '**' segments
+        while (patternIndex + 1 < pattern.length && ANY_SEGMENTS.equals(pattern[patternIndex + 1])) {
+            patternIndex++;
+        }
+        if (patternIndex + 1 == pattern.length) {
+            return true;
+        }
+        for (int i = pathIndex; i <= path.length; i++) {
+            if (matchSegments(pattern, patternIndex + 1, path, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Match a single path segment against a pattern segment with
+     * '*' and '?' wildcards, backtracking to the last '*' on mismatch.
+     */
+    private boolean matchSegment(String pattern, String segment) {
+        int p = 0;
+        int s = 0;
+        int starIndex = -1;
+        int starMatch = 0;
+        while (s < segment.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == segment.charAt(s))) {
+                p++;
+                s++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                starIndex = p++;
+                starMatch = s;
+            } else if (starIndex != -1) {
+                p = starIndex + 1;
+                s = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+        return (p == pattern.length());
+    }
+
+}
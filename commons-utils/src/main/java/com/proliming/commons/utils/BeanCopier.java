@@ -0,0 +1,651 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Copies the field state of one object to another, following a copy plan that is
+ * computed once per pair of source and target class and cached.
+ * <p/>
+ * <p>If the target class is the source class or a subclass of it, all non-static,
+ * non-final fields declared in the source class hierarchy are copied, just like
+ * {@link ReflectionUtils#shallowCopyFieldState}. Otherwise, each such source field is
+ * copied to the nearest non-static, non-final target field of the same name, provided
+ * that the source field's type is assignable to it, with primitive widening; fields
+ * without such a counterpart are skipped.
+ * <p>Each copied field is compiled into a single {@link MethodHandle} that reads the
+ * source field and writes the target field, so copying performs no access checks and
+ * no boxing of primitive values.
+ * <p>A deep copier copies referenced objects instead of sharing them: arrays,
+ * collections, maps and {@code Optional}s are copied with their elements, and
+ * application objects are copied into a new instance created through their no-arg
+ * constructor. Collections and maps are copied into a new instance of their class if
+ * it has a public no-arg constructor, and into a standard container otherwise; copies
+ * of unmodifiable, synchronized and fixed-size JDK containers, such as those returned
+ * by {@code Collections.unmodifiableList}, {@code List.of} or {@code Arrays.asList},
+ * are wrapped the same way. Only the elements of collections and maps are copied:
+ * fields that an application subclass of a collection or map declares itself are
+ * left at their initial values. JDK objects keep their state to themselves: they are copied through
+ * {@code clone()} if they are {@code Cloneable}, like {@code Date}, and are otherwise
+ * shared, which suits immutable values such as strings, enums, {@code File},
+ * {@code URI}, {@code Path} or {@code Pattern}. Object graphs with cycles and shared
+ * references are copied with the same structure.
+ * <p>A copier is cached along with whichever of its two classes has the narrower
+ * ClassLoader, so that it does not keep a class of a child ClassLoader reachable
+ * through a class of its parent; copiers between classes of unrelated ClassLoaders
+ * are not cached.
+ * <pre class="code">
+ * BeanCopier copier = BeanCopier.create(OrderDto.class, Order.class);
+ * copier.copy(dto, order);
+ * </pre>
+ *
+ * @see ReflectionUtils#COPYABLE_FIELDS
+ */
+public final class BeanCopier {
+
+    private static final String ARRAYS_AS_LIST_CLASS_NAME = "java.util.Arrays$ArrayList";
+
+    private static final String SYNCHRONIZED_CLASS_NAME_PREFIX = "java.util.Collections$Synchronized";
+
+    private static final String[] UNMODIFIABLE_CLASS_NAME_PREFIXES = {"java.util.Collections$Unmodifiable",
+            "java.util.Collections$Empty", "java.util.Collections$Singleton", "java.util.ImmutableCollections$"};
+
+    private static final Set<Class<?>> immutableTypes = new HashSet<Class<?>>(16);
+
+    private static final ClassCache<ConcurrentMap<ClassPair, BeanCopier>> shallowCopierCache =
+            new CopierCache();
+
+    private static final ClassCache<ConcurrentMap<ClassPair, BeanCopier>> deepCopierCache =
+            new CopierCache();
+
+    static {
+        immutableTypes.add(String.class);
+        immutableTypes.add(Boolean.class);
+        immutableTypes.add(Byte.class);
+        immutableTypes.add(Character.class);
+        immutableTypes.add(Short.class);
+        immutableTypes.add(Integer.class);
+        immutableTypes.add(Long.class);
+        immutableTypes.add(Float.class);
+        immutableTypes.add(Double.class);
+        immutableTypes.add(BigInteger.class);
+        immutableTypes.add(BigDecimal.class);
+        immutableTypes.add(Class.class);
+        immutableTypes.add(Locale.class);
+        immutableTypes.add(UUID.class);
+        immutableTypes.add(URI.class);
+        immutableTypes.add(URL.class);
+        immutableTypes.add(Pattern.class);
+        immutableTypes.add(Currency.class);
+    }
+
+    private final Class<?> sourceClass;
+
+    private final Class<?> targetClass;
+
+    private final boolean deep;
+
+    private final CopyStep[] steps;
+
+    private volatile Constructor<?> constructor;
+
+    private BeanCopier(Class<?> sourceClass, Class<?> targetClass, boolean deep) {
+        this.sourceClass = sourceClass;
+        this.targetClass = targetClass;
+        this.deep = deep;
+        this.steps = buildPlan(sourceClass, targetClass, deep);
+    }
+
+    /**
+     * Return the shallow copier for the given source and target class.
+     *
+     * @param sourceClass the class of the objects to copy from
+     * @param targetClass the class of the objects to copy to
+     *
+     * @return the cached copier
+     */
+    public static BeanCopier create(Class<?> sourceClass, Class<?> targetClass) {
+        return create(sourceClass, targetClass, false);
+    }
+
+    /**
+     * Return the copier for the given source and target class.
+     *
+     * @param sourceClass the class of the objects to copy from
+     * @param targetClass the class of the objects to copy to
+     * @param deep        whether to copy referenced objects rather than share them
+     *
+     * @return the cached copier
+     */
+    public static BeanCopier create(Class<?> sourceClass, Class<?> targetClass, boolean deep) {
+        Verify.notNull(sourceClass, "Source class must not be null");
+        Verify.notNull(targetClass, "Target class must not be null");
+        Class<?> owner;
+        if (ClassUtils.isCacheSafe(targetClass, sourceClass.getClassLoader())) {
+            owner = sourceClass;
+        } else if (ClassUtils.isCacheSafe(sourceClass, targetClass.getClassLoader())) {
+            owner = targetClass;
+        } else {
+            // Unrelated ClassLoaders: either class would keep the other one reachable
+            return new BeanCopier(sourceClass, targetClass, deep);
+        }
+        ConcurrentMap<ClassPair, BeanCopier> copiers = (deep ? deepCopierCache : shallowCopierCache).get(owner);
+        ClassPair key = new ClassPair(sourceClass, targetClass);
+        BeanCopier copier = copiers.get(key);
+        if (copier == null) {
+            copier = new BeanCopier(sourceClass, targetClass, deep);
+            BeanCopier existing = copiers.putIfAbsent(key, copier);
+            if (existing != null) {
+                copier = existing;
+            }
+        }
+        return copier;
+    }
+
+    /**
+     * Return the class of the objects this copier copies from.
+     */
+    public Class<?> getSourceClass() {
+        return this.sourceClass;
+    }
+
+    /**
+     * Return the class of the objects this copier copies to.
+     */
+    public Class<?> getTargetClass() {
+        return this.targetClass;
+    }
+
+    /**
+     * Return whether this copier copies referenced objects rather than share them.
+     */
+    public boolean isDeep() {
+        return this.deep;
+    }
+
+    /**
+     * Copy the state of the given source object to the given target object.
+     *
+     * @param source the object to copy from, an instance of the source class
+     * @param target the object to copy to, an instance of the target class
+     *
+     * @throws VerifyException if an object is not an instance of the expected class
+     */
+    public void copy(Object source, Object target) {
+        Verify.notNull(source, "Source for field copy cannot be null");
+        Verify.notNull(target, "Destination for field copy cannot be null");
+        Verify.verify(this.sourceClass.isInstance(source), "Source object [%s] is not an instance of %s",
+                source, this.sourceClass);
+        Verify.verify(this.targetClass.isInstance(target), "Destination object [%s] is not an instance of %s",
+                target, this.targetClass);
+        IdentityHashMap<Object, Object> copies = null;
+        if (this.deep) {
+            copies = new IdentityHashMap<Object, Object>();
+            copies.put(source, target);
+        }
+        copyFields(source, target, copies);
+    }
+
+    private void copyFields(Object source, Object target, IdentityHashMap<Object, Object> copies) {
+        for (CopyStep step : this.steps) {
+            try {
+                step.copy(source, target, copies);
+            } catch (Throwable ex) {
+                ReflectionUtils.rethrowRuntimeException(ex);
+            }
+        }
+    }
+
+    private Object instantiate() {
+        Constructor<?> constructor = this.constructor;
+        if (constructor == null) {
+            try {
+                constructor = this.targetClass.getDeclaredConstructor();
+            } catch (NoSuchMethodException ex) {
+                throw new IllegalArgumentException("Cannot deep copy instance of " + this.targetClass.getName() +
+                        ": no no-arg constructor");
+            }
+            ReflectionUtils.makeAccessible(constructor);
+            this.constructor = constructor;
+        }
+        try {
+            return constructor.newInstance();
+        } catch (Exception ex) {
+            ReflectionUtils.handleReflectionException(ex);
+            throw new IllegalStateException("Should never get here");
+        }
+    }
+
+    private static CopyStep[] buildPlan(Class<?> sourceClass, final Class<?> targetClass, final boolean deep) {
+        final boolean sameHierarchy = sourceClass.isAssignableFrom(targetClass);
+        final List<CopyStep> steps = new ArrayList<CopyStep>();
+        final Set<String> copiedNames = new HashSet<String>();
+        ReflectionUtils.doWithFields(sourceClass, new ReflectionUtils.FieldCallback() {
+            @Override
+            public void doWith(Field sourceField) throws IllegalAccessException {
+                Field targetField;
+                if (sameHierarchy) {
+                    targetField = sourceField;
+                } else {
+                    // The nearest declaration wins on both sides
+                    if (!copiedNames.add(sourceField.getName())) {
+                        return;
+                    }
+                    targetField = ReflectionUtils.findField(targetClass, sourceField.getName());
+                    if (targetField == null || !ReflectionUtils.COPYABLE_FIELDS.matches(targetField) ||
+                            !isCopyable(sourceField.getType(), targetField.getType())) {
+                        return;
+                    }
+                }
+                steps.add(createStep(sourceField, targetField, deep));
+            }
+        }, ReflectionUtils.COPYABLE_FIELDS);
+        return steps.toArray(new CopyStep[steps.size()]);
+    }
+
+    private static boolean isCopyable(Class<?> sourceType, Class<?> targetType) {
+        if (sourceType.isPrimitive() != targetType.isPrimitive()) {
+            return false;
+        }
+        if (!sourceType.isPrimitive()) {
+            return targetType.isAssignableFrom(sourceType);
+        }
+        try {
+            MethodHandles.identity(sourceType).asType(MethodType.methodType(targetType, sourceType));
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    private static CopyStep createStep(Field sourceField, Field targetField, boolean deep)
+            throws IllegalAccessException {
+        ReflectionUtils.makeAccessible(sourceField);
+        ReflectionUtils.makeAccessible(targetField);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle getter = lookup.unreflectGetter(sourceField);
+        MethodHandle setter = lookup.unreflectSetter(targetField);
+        if (deep && !isImmutable(sourceField.getType())) {
+            getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return new DeepCopyStep(getter, setter);
+        }
+        getter = getter.asType(MethodType.methodType(targetField.getType(), Object.class));
+        setter = setter.asType(MethodType.methodType(void.class, Object.class, targetField.getType()));
+        // (target, source) -> target.field = source.field
+        MethodHandle copier = MethodHandles.filterArguments(setter, 1, getter);
+        return new DirectCopyStep(copier);
+    }
+
+    private static boolean isImmutable(Class<?> type) {
+        return (type.isPrimitive() || type.isEnum() || immutableTypes.contains(type) ||
+                (type.getSuperclass() != null && type.getSuperclass().isEnum()) ||
+                type.getName().startsWith("java.time."));
+    }
+
+    /**
+     * Return a deep copy of the given value, reusing copies already made
+     * during the current copy operation.
+     */
+    private static Object deepCopy(Object value, IdentityHashMap<Object, Object> copies) {
+        if (value == null || isImmutable(value.getClass())) {
+            return value;
+        }
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        Class<?> type = value.getClass();
+        if (type.isArray()) {
+            int length = Array.getLength(value);
+            copy = Array.newInstance(type.getComponentType(), length);
+            copies.put(value, copy);
+            if (type.getComponentType().isPrimitive() || isImmutable(type.getComponentType())) {
+                System.arraycopy(value, 0, copy, 0, length);
+            } else {
+                Object[] elements = (Object[]) value;
+                Object[] copiedElements = (Object[]) copy;
+                for (int i = 0; i < length; i++) {
+                    copiedElements[i] = deepCopy(elements[i], copies);
+                }
+            }
+        } else if (value instanceof Collection) {
+            copy = deepCopyCollection((Collection<?>) value, copies);
+        } else if (value instanceof Map) {
+            copy = deepCopyMap((Map<?, ?>) value, copies);
+        } else if (value instanceof Optional) {
+            copy = Optional.ofNullable(deepCopy(((Optional<?>) value).orElse(null), copies));
+            copies.put(value, copy);
+        } else if (isJdkType(type)) {
+            // JDK types keep their fields to themselves: clone them if possible, else share them
+            copy = (value instanceof Cloneable ? cloneJdkObject(value) : value);
+            copies.put(value, copy);
+        } else {
+            BeanCopier copier = create(type, type, true);
+            copy = copier.instantiate();
+            copies.put(value, copy);
+            copier.copyFields(value, copy, copies);
+        }
+        return copy;
+    }
+
+    private static boolean isJdkType(Class<?> type) {
+        String name = type.getName();
+        return (type.getClassLoader() == null || name.startsWith("java.") || name.startsWith("javax.") ||
+                name.startsWith("jdk.") || name.startsWith("sun.") || name.startsWith("com.sun."));
+    }
+
+    /**
+     * Clone the given JDK object through the public {@code clone()} method of its nearest
+     * {@code java.*} class, since implementation classes such as {@code sun.util.calendar.ZoneInfo}
+     * may not be accessible. Objects without a public {@code clone()} method are shared.
+     */
+    private static Object cloneJdkObject(Object value) {
+        Class<?> type = value.getClass();
+        while (!type.getName().startsWith("java.") && type.getSuperclass() != null) {
+            type = type.getSuperclass();
+        }
+        Method cloneMethod = ClassUtils.getMethodIfAvailable(type, "clone");
+        return (cloneMethod != null ? ReflectionUtils.invokeMethod(cloneMethod, value) : value);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object deepCopyCollection(Collection<?> collection, IdentityHashMap<Object, Object> copies) {
+        Collection copy;
+        if (collection instanceof EnumSet) {
+            // Elements are enum constants, no need to copy them
+            copy = ((EnumSet) collection).clone();
+            copies.put(collection, copy);
+            return copy;
+        }
+        if (ARRAYS_AS_LIST_CLASS_NAME.equals(collection.getClass().getName())) {
+            // Fixed-size list: copy into a new one of the same size
+            List list = Arrays.asList(new Object[collection.size()]);
+            copies.put(collection, list);
+            int index = 0;
+            for (Object element : collection) {
+                list.set(index++, deepCopy(element, copies));
+            }
+            return list;
+        }
+        Comparator<?> comparator = (collection instanceof SortedSet ? ((SortedSet<?>) collection).comparator() : null);
+        Collection elements = (Collection) instantiateContainer(collection.getClass(), comparator);
+        if (elements != null) {
+            copy = elements;
+        } else {
+            if (collection instanceof SortedSet) {
+                elements = new TreeSet(comparator);
+            } else if (collection instanceof Set) {
+                elements = new LinkedHashSet(collection.size());
+            } else {
+                elements = new ArrayList(collection.size());
+            }
+            copy = wrapCollectionCopy(collection, elements);
+        }
+        copies.put(collection, copy);
+        for (Object element : collection) {
+            elements.add(deepCopy(element, copies));
+        }
+        return copy;
+    }
+
+    /**
+     * Wrap the given standard container holding the copied elements of a JDK collection
+     * the way the original collection is wrapped, i.e. into an unmodifiable or a
+     * synchronized view. The view is returned right away and filled through the container.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Collection wrapCollectionCopy(Collection<?> original, Collection elements) {
+        String className = original.getClass().getName();
+        if (isUnmodifiableContainer(className)) {
+            if (original instanceof NavigableSet) {
+                return Collections.unmodifiableNavigableSet((NavigableSet) elements);
+            } else if (original instanceof SortedSet) {
+                return Collections.unmodifiableSortedSet((SortedSet) elements);
+            } else if (original instanceof Set) {
+                return Collections.unmodifiableSet((Set) elements);
+            } else if (original instanceof List) {
+                return Collections.unmodifiableList((List) elements);
+            }
+            return Collections.unmodifiableCollection(elements);
+        }
+        if (className.startsWith(SYNCHRONIZED_CLASS_NAME_PREFIX)) {
+            if (original instanceof NavigableSet) {
+                return Collections.synchronizedNavigableSet((NavigableSet) elements);
+            } else if (original instanceof SortedSet) {
+                return Collections.synchronizedSortedSet((SortedSet) elements);
+            } else if (original instanceof Set) {
+                return Collections.synchronizedSet((Set) elements);
+            } else if (original instanceof List) {
+                return Collections.synchronizedList((List) elements);
+            }
+            return Collections.synchronizedCollection(elements);
+        }
+        return elements;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object deepCopyMap(Map<?, ?> map, IdentityHashMap<Object, Object> copies) {
+        Map copy;
+        Map entries;
+        if (map instanceof EnumMap) {
+            entries = new EnumMap((EnumMap) map);
+            entries.clear();
+            copy = entries;
+        } else {
+            Comparator<?> comparator = (map instanceof SortedMap ? ((SortedMap<?, ?>) map).comparator() : null);
+            entries = (Map) instantiateContainer(map.getClass(), comparator);
+            if (entries != null) {
+                copy = entries;
+            } else {
+                entries = (map instanceof SortedMap ? new TreeMap(comparator) : new LinkedHashMap(map.size()));
+                copy = wrapMapCopy(map, entries);
+            }
+        }
+        copies.put(map, copy);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            entries.put(deepCopy(entry.getKey(), copies), deepCopy(entry.getValue(), copies));
+        }
+        return copy;
+    }
+
+    /**
+     * Wrap the given standard map holding the copied entries of a JDK map the way
+     * the original map is wrapped, i.e. into an unmodifiable or a synchronized view.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Map wrapMapCopy(Map<?, ?> original, Map entries) {
+        String className = original.getClass().getName();
+        if (isUnmodifiableContainer(className)) {
+            if (original instanceof NavigableMap) {
+                return Collections.unmodifiableNavigableMap((NavigableMap) entries);
+            } else if (original instanceof SortedMap) {
+                return Collections.unmodifiableSortedMap((SortedMap) entries);
+            }
+            return Collections.unmodifiableMap(entries);
+        }
+        if (className.startsWith(SYNCHRONIZED_CLASS_NAME_PREFIX)) {
+            if (original instanceof NavigableMap) {
+                return Collections.synchronizedNavigableMap((NavigableMap) entries);
+            } else if (original instanceof SortedMap) {
+                return Collections.synchronizedSortedMap((SortedMap) entries);
+            }
+            return Collections.synchronizedMap(entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Return whether the given JDK container class does not support modification:
+     * the unmodifiable views, empty and singleton containers of {@link Collections},
+     * and the immutable containers of {@code List.of}, {@code Set.of} and {@code Map.of}.
+     */
+    private static boolean isUnmodifiableContainer(String className) {
+        for (String prefix : UNMODIFIABLE_CLASS_NAME_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Create an empty instance of the given collection or map class through its
+     * public constructor, or return {@code null} if it has none that fits.
+     */
+    private static Object instantiateContainer(Class<?> type, Comparator<?> comparator) {
+        try {
+            if (comparator != null) {
+                Constructor<?> constructor = ClassUtils.getConstructorIfAvailable(type, Comparator.class);
+                return (constructor != null ? constructor.newInstance(comparator) : null);
+            }
+            Constructor<?> constructor = ClassUtils.getConstructorIfAvailable(type);
+            return (constructor != null ? constructor.newInstance() : null);
+        } catch (Exception ex) {
+            // Not instantiable from outside - fall back to a standard container
+            return null;
+        }
+    }
+
+    /**
+     * Copies a single field from the source object to the target object.
+     */
+    private interface CopyStep {
+
+        void copy(Object source, Object target, IdentityHashMap<Object, Object> copies) throws Throwable;
+    }
+
+    /**
+     * Copies a field value as is, through a single combined handle.
+     */
+    private static final class DirectCopyStep implements CopyStep {
+
+        private final MethodHandle copier;
+
+        public DirectCopyStep(MethodHandle copier) {
+            this.copier = copier;
+        }
+
+        @Override
+        public void copy(Object source, Object target, IdentityHashMap<Object, Object> copies) throws Throwable {
+            this.copier.invokeExact(target, source);
+        }
+    }
+
+    /**
+     * Copies a deep copy of a field value.
+     */
+    private static final class DeepCopyStep implements CopyStep {
+
+        private final MethodHandle getter;
+
+        private final MethodHandle setter;
+
+        public DeepCopyStep(MethodHandle getter, MethodHandle setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        @Override
+        public void copy(Object source, Object target, IdentityHashMap<Object, Object> copies) throws Throwable {
+            Object value = (Object) this.getter.invokeExact(source);
+            this.setter.invokeExact(target, deepCopy(value, copies));
+        }
+    }
+
+    /**
+     * Caches copiers by the class with the narrower ClassLoader and, within it,
+     * by source and target class.
+     */
+    private static final class CopierCache extends ClassCache<ConcurrentMap<ClassPair, BeanCopier>> {
+
+        @Override
+        protected ConcurrentMap<ClassPair, BeanCopier> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<ClassPair, BeanCopier>(4);
+        }
+    }
+
+    /**
+     * Source and target class of a cached copier.
+     */
+    private static final class ClassPair {
+
+        private final Class<?> sourceClass;
+
+        private final Class<?> targetClass;
+
+        public ClassPair(Class<?> sourceClass, Class<?> targetClass) {
+            this.sourceClass = sourceClass;
+            this.targetClass = targetClass;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof ClassPair)) {
+                return false;
+            }
+            ClassPair otherPair = (ClassPair) other;
+            return (this.sourceClass == otherPair.sourceClass && this.targetClass == otherPair.targetClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.sourceClass.hashCode() * 29 + this.targetClass.hashCode();
+        }
+    }
+
+}
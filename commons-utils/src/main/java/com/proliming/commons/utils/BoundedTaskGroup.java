@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A group of tasks run on an {@link Executor} with at most a fixed number in flight:
+ * {@link #submit(Runnable)} blocks while the limit is reached, so a producer cannot
+ * run arbitrarily far ahead of the tasks. Tasks the executor rejects are run in the
+ * submitting thread.
+ * <p/>
+ * <p>If the submitting thread is interrupted while blocked in {@link #submit(Runnable)}
+ * or {@link #await()}, the group is {@linkplain #cancel() cancelled} and the method
+ * waits for the tasks that are already running before throwing the
+ * {@link InterruptedException}, so no task of the group outlives the call.
+ * <p>A group is meant to be used by a single submitting thread.
+ * <p>Tasks that block on I/O should not run on the common {@code ForkJoinPool}: it
+ * has only as many threads as there are processors, and blocked tasks starve every
+ * other user of the pool. {@link #getBlockingIoExecutor()} provides a dedicated
+ * executor for them.
+ *
+ * @see CopyUtils#copyRecursively(java.io.File, java.io.File, Executor, int)
+ */
+public final class BoundedTaskGroup {
+
+    /**
+     * The number of threads of the {@linkplain #getBlockingIoExecutor() shared
+     * executor for blocking I/O}.
+     */
+    public static final int BLOCKING_IO_THREADS = 16;
+
+    private final Executor executor;
+
+    private final int maxInFlight;
+
+    private final Semaphore permits;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Create a new {@code BoundedTaskGroup}.
+     *
+     * @param executor    the executor to run tasks on
+     * @param maxInFlight the maximum number of tasks submitted but not yet completed
+     */
+    public BoundedTaskGroup(Executor executor, int maxInFlight) {
+        Verify.notNull(executor, "Executor must not be null");
+        Verify.verify(maxInFlight > 0, "Max in-flight tasks must be positive: %s", maxInFlight);
+        this.executor = executor;
+        this.maxInFlight = maxInFlight;
+        this.permits = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * Submit the given task, waiting until fewer than the maximum number of
+     * tasks are in flight. Does nothing if the group has been cancelled.
+     *
+     * @param task the task to run
+     *
+     * @throws InterruptedException if interrupted while waiting; running tasks
+     *                              have completed when it is thrown
+     */
+    public void submit(final Runnable task) throws InterruptedException {
+        Verify.notNull(task, "Task must not be null");
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException ex) {
+            cancelAndWait();
+            throw ex;
+        }
+        if (this.cancelled) {
+            this.permits.release();
+            return;
+        }
+        Runnable permitTask = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!cancelled) {
+                        task.run();
+                    }
+                } finally {
+                    permits.release();
+                }
+            }
+        };
+        try {
+            this.executor.execute(permitTask);
+        } catch (RejectedExecutionException ex) {
+            permitTask.run();
+        }
+    }
+
+    /**
+     * Wait until all submitted tasks have completed or, after {@link #cancel()},
+     * been skipped. Completion of a task happens-before this method returns.
+     *
+     * @throws InterruptedException if interrupted while waiting; running tasks
+     *                              have completed when it is thrown
+     */
+    public void await() throws InterruptedException {
+        try {
+            this.permits.acquire(this.maxInFlight);
+        } catch (InterruptedException ex) {
+            cancelAndWait();
+            throw ex;
+        }
+        this.permits.release(this.maxInFlight);
+    }
+
+    /**
+     * Cancel the group: tasks that have not started yet are skipped, and
+     * further submissions are ignored. Running tasks are not interrupted.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Return whether the group has been cancelled.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Return a shared executor for tasks that block on I/O, with up to
+     * {@link #BLOCKING_IO_THREADS} daemon threads that terminate when idle.
+     * Tasks beyond that are queued, so groups running on it should limit their
+     * tasks in flight to {@link #BLOCKING_IO_THREADS}.
+     */
+    public static Executor getBlockingIoExecutor() {
+        return BlockingIoExecutorHolder.EXECUTOR;
+    }
+
+    private void cancelAndWait() {
+        this.cancelled = true;
+        this.permits.acquireUninterruptibly(this.maxInFlight);
+        this.permits.release(this.maxInFlight);
+    }
+
+    /**
+     * Holder for the lazily created {@link #getBlockingIoExecutor() blocking I/O executor}.
+     */
+    private static class BlockingIoExecutorHolder {
+
+        static final ThreadPoolExecutor EXECUTOR;
+
+        static {
+            final AtomicInteger threadNumber = new AtomicInteger();
+            EXECUTOR = new ThreadPoolExecutor(BLOCKING_IO_THREADS, BLOCKING_IO_THREADS, 60L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "blocking-io-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            EXECUTOR.allowCoreThreadTimeOut(true);
+        }
+    }
+
+}
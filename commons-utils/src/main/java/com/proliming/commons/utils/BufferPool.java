@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Striped pool of reusable I/O buffers, both heap {@code byte[]} arrays and direct
+ * {@link ByteBuffer}s, for hot copy paths that would otherwise allocate a fresh
+ * buffer per call.
+ * <p/>
+ * <p>The pool is split into stripes selected by the calling thread, each holding a
+ * few buffers, so that concurrent threads rarely contend on the same slots. Acquiring
+ * never blocks: if no pooled buffer of sufficient size is available, a new one is
+ * allocated. Releasing never blocks either: if the stripe is full, or the buffer is
+ * larger than {@link #MAX_POOLED_SIZE}, the buffer is simply left to the garbage
+ * collector.
+ * <p>A released buffer must not be used by the caller anymore, and every buffer
+ * must be released at most once.
+ * <pre class="code">
+ * byte[] buffer = BufferPool.acquireHeap(BufferPool.DEFAULT_BUFFER_SIZE);
+ * try {
+ *     ...
+ * } finally {
+ *     BufferPool.release(buffer);
+ * }
+ * </pre>
+ */
+public abstract class BufferPool {
+
+    /**
+     * Default size of pooled buffers.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Buffers larger than this are never retained by the pool.
+     */
+    public static final int MAX_POOLED_SIZE = 1024 * 1024;
+
+    private static final int SLOTS_PER_STRIPE = 4;
+
+    private static final int STRIPE_MASK;
+
+    private static final AtomicReferenceArray<byte[]> heapBuffers;
+
+    private static final AtomicReferenceArray<ByteBuffer> directBuffers;
+
+    static {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        STRIPE_MASK = stripes - 1;
+        heapBuffers = new AtomicReferenceArray<byte[]>(stripes * SLOTS_PER_STRIPE);
+        directBuffers = new AtomicReferenceArray<ByteBuffer>(stripes * SLOTS_PER_STRIPE);
+    }
+
+    /**
+     * Acquire a heap buffer of at least {@link #DEFAULT_BUFFER_SIZE} bytes.
+     *
+     * @return a buffer whose content is undefined
+     */
+    public static byte[] acquireHeap() {
+        return acquireHeap(DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Acquire a heap buffer of at least the given size.
+     *
+     * @param minSize the minimum size of the buffer
+     *
+     * @return a buffer whose content is undefined
+     */
+    public static byte[] acquireHeap(int minSize) {
+        Verify.verify(minSize >= 0, "Buffer size must not be negative");
+        if (minSize <= MAX_POOLED_SIZE) {
+            int first = firstSlot();
+            for (int i = first; i < first + SLOTS_PER_STRIPE; i++) {
+                byte[] buffer = heapBuffers.get(i);
+                if (buffer != null && buffer.length >= minSize && heapBuffers.compareAndSet(i, buffer, null)) {
+                    return buffer;
+                }
+            }
+        }
+        return new byte[Math.max(minSize, DEFAULT_BUFFER_SIZE)];
+    }
+
+    /**
+     * Return the given heap buffer to the pool.
+     *
+     * @param buffer the buffer to release, may be {@code null}
+     */
+    public static void release(byte[] buffer) {
+        if (buffer == null || buffer.length > MAX_POOLED_SIZE) {
+            return;
+        }
+        int first = firstSlot();
+        for (int i = first; i < first + SLOTS_PER_STRIPE; i++) {
+            if (heapBuffers.get(i) == null && heapBuffers.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Acquire a direct buffer with a capacity of at least the given size.
+     *
+     * @param minSize the minimum capacity of the buffer
+     *
+     * @return a cleared buffer whose content is undefined
+     */
+    public static ByteBuffer acquireDirect(int minSize) {
+        Verify.verify(minSize >= 0, "Buffer size must not be negative");
+        if (minSize <= MAX_POOLED_SIZE) {
+            int first = firstSlot();
+            for (int i = first; i < first + SLOTS_PER_STRIPE; i++) {
+                ByteBuffer buffer = directBuffers.get(i);
+                if (buffer != null && buffer.capacity() >= minSize && directBuffers.compareAndSet(i, buffer, null)) {
+                    buffer.clear();
+                    return buffer;
+                }
+            }
+        }
+        return ByteBuffer.allocateDirect(Math.max(minSize, DEFAULT_BUFFER_SIZE));
+    }
+
+    /**
+     * Return the given direct buffer to the pool. Heap buffers and
+     * read-only buffers are ignored.
+     *
+     * @param buffer the buffer to release, may be {@code null}
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || buffer.isReadOnly() || buffer.capacity() > MAX_POOLED_SIZE) {
+            return;
+        }
+        int first = firstSlot();
+        for (int i = first; i < first + SLOTS_PER_STRIPE; i++) {
+            if (directBuffers.get(i) == null && directBuffers.compareAndSet(i, null, buffer)) {
+                return;
+            }
+        }
+    }
+
+    private static int firstSlot() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash ^ (hash >>> 16)) & STRIPE_MASK) * SLOTS_PER_STRIPE;
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of per-class metadata, backed by a {@link ClassValue} so that cached values
+ * live and die with the class they were computed for.
+ * <p/>
+ * <p>Unlike a static map keyed by {@code Class}, the cache does not keep classes, or
+ * the ClassLoaders that defined them, reachable: once a ClassLoader is discarded, for
+ * example on redeployment, its classes and their cached values become collectable
+ * together. Lookups are a constant-time probe into the class itself.
+ * <p>This holds for classes defined by the cache's own ClassLoader or its descendants.
+ * A value attached to a class of an ancestor ClassLoader, such as {@code Object},
+ * would keep the cache's ClassLoader reachable for as long as that class lives
+ * (see JDK-8136353); values for such classes are therefore held by the cache itself,
+ * which they cannot outlive, and values for classes of unrelated ClassLoaders are
+ * not cached at all. Where the cache's ClassLoader is the system ClassLoader or one
+ * of its ancestors, which are never discarded, all values are attached to their class.
+ * <p>The guarantee also depends on the values: a value must not strongly reference
+ * the cache itself, nor classes of ClassLoaders that may be discarded before the
+ * class it was computed for, e.g. a class of a child ClassLoader.
+ * <p>All callers observe the same value for a given class; concurrent first lookups
+ * may compute a value more than once, but only one of the results is ever published.
+ * <p>Subclasses implement {@link #computeValue(Class)}:
+ * <pre class="code">
+ * private static final ClassCache&lt;Field[]&gt; fieldsCache = new ClassCache&lt;Field[]&gt;() {
+ *     protected Field[] computeValue(Class&lt;?&gt; type) {
+ *         return type.getDeclaredFields();
+ *     }
+ * };
+ * </pre>
+ *
+ * @param <V> the type of cached values
+ */
+public abstract class ClassCache<V> {
+
+    private final ClassValue<V> values = new ClassValue<V>() {
+        @Override
+        protected V computeValue(Class<?> type) {
+            missCount.increment();
+            return ClassCache.this.computeValue(type);
+        }
+    };
+
+    private final ConcurrentMap<Class<?>, V> ancestorValues = new ConcurrentHashMap<Class<?>, V>();
+
+    private final ClassLoader cacheClassLoader = getClass().getClassLoader();
+
+    private final boolean attachAlways = isSystemClassLoaderOrAncestor(this.cacheClassLoader);
+
+    private final LongAdder requestCount = new LongAdder();
+
+    private final LongAdder missCount = new LongAdder();
+
+    private final LongAdder removalCount = new LongAdder();
+
+    /**
+     * Return the cached value for the given class, computing it on first access.
+     *
+     * @param type the class to return the value for
+     *
+     * @return the value for the class
+     */
+    public V get(Class<?> type) {
+        Verify.notNull(type, "Class must not be null");
+        this.requestCount.increment();
+        if (this.attachAlways || ClassUtils.isCacheSafe(getClass(), type.getClassLoader())) {
+            return this.values.get(type);
+        }
+        if (ClassUtils.isCacheSafe(type, this.cacheClassLoader)) {
+            // Attaching the value would pin this cache's ClassLoader to the longer-lived class
+            V value = this.ancestorValues.get(type);
+            if (value == null) {
+                this.missCount.increment();
+                value = computeValue(type);
+                V existing = this.ancestorValues.putIfAbsent(type, value);
+                if (existing != null) {
+                    value = existing;
+                }
+            }
+            return value;
+        }
+        // Unrelated ClassLoader: neither side may keep the other reachable
+        this.missCount.increment();
+        return computeValue(type);
+    }
+
+    /**
+     * Remove the cached value for the given class, if any, so that it gets
+     * recomputed on the next access.
+     *
+     * @param type the class to remove the value for
+     */
+    public void remove(Class<?> type) {
+        Verify.notNull(type, "Class must not be null");
+        this.removalCount.increment();
+        this.values.remove(type);
+        this.ancestorValues.remove(type);
+    }
+
+    /**
+     * Return a snapshot of this cache's statistics.
+     */
+    public Stats getStats() {
+        return new Stats(this.requestCount.sum(), this.missCount.sum(), this.removalCount.sum());
+    }
+
+    private static boolean isSystemClassLoaderOrAncestor(ClassLoader classLoader) {
+        if (classLoader == null) {
+            return true;
+        }
+        try {
+            for (ClassLoader cl = ClassLoader.getSystemClassLoader(); cl != null; cl = cl.getParent()) {
+                if (cl == classLoader) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (SecurityException ex) {
+            // Cannot determine the relation: check it per lookup
+            return false;
+        }
+    }
+
+    /**
+     * Compute the value for the given class. Called on the first lookup of a
+     * class and on the first lookup after its value was removed.
+     *
+     * @param type the class to compute the value for
+     *
+     * @return the value for the class
+     */
+    protected abstract V computeValue(Class<?> type);
+
+    /**
+     * Statistics of a {@link ClassCache}, accumulated since its creation.
+     */
+    public static final class Stats {
+
+        private final long requestCount;
+
+        private final long missCount;
+
+        private final long removalCount;
+
+        Stats(long requestCount, long missCount, long removalCount) {
+            this.requestCount = requestCount;
+            this.missCount = missCount;
+            this.removalCount = removalCount;
+        }
+
+        /**
+         * Return the number of lookups.
+         */
+        public long getRequestCount() {
+            return this.requestCount;
+        }
+
+        /**
+         * Return the number of lookups served from the cache.
+         */
+        public long getHitCount() {
+            return Math.max(this.requestCount - this.missCount, 0);
+        }
+
+        /**
+         * Return the number of values computed.
+         */
+        public long getMissCount() {
+            return this.missCount;
+        }
+
+        /**
+         * Return the number of explicit removals.
+         */
+        public long getRemovalCount() {
+            return this.removalCount;
+        }
+
+        /**
+         * Return the ratio of lookups served from the cache, or {@code 1.0}
+         * if there were no lookups yet.
+         */
+        public double getHitRate() {
+            return (this.requestCount == 0 ? 1.0 : (double) getHitCount() / this.requestCount);
+        }
+
+        @Override
+        public String toString() {
+            return "ClassCache.Stats [requests=" + this.requestCount + ", hits=" + getHitCount() +
+                    ", misses=" + this.missCount + ", removals=" + this.removalCount + "]";
+        }
+    }
+
+}
@@ -32,6 +32,7 @@
 package com.proliming.commons.utils;
 
 import java.beans.Introspector;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
@@ -49,6 +50,10 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Miscellaneous class utility methods.
@@ -119,6 +124,42 @@ public final class ClassUtils {
      */
     private static final Map<String, Class<?>> commonClassCache = new HashMap<String, Class<?>>(32);
 
+    /**
+     * Maximum number of names cached per ClassLoader by {@link #forName}.
+     */
+    private static final int MAX_FOR_NAME_CACHE_SIZE = 8192;
+
+    /**
+     * Maximum number of names per ClassLoader that {@link #forName} remembers
+     * as not resolvable.
+     */
+    private static final int MAX_NOT_FOUND_CACHE_SIZE = 1024;
+
+    /**
+     * Time after which {@link #forName} tries again to resolve a name that
+     * could not be resolved.
+     */
+    private static final long NOT_FOUND_EXPIRY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    /**
+     * Cache entry for names that are known not to be resolvable.
+     */
+    private static final Object CLASS_NOT_FOUND = new Object();
+
+    /**
+     * Cache of {@link #forName} results per ClassLoader, with weak keys. The cached
+     * classes are held weakly as well, since they would otherwise keep their own
+     * ClassLoader key reachable.
+     */
+    private static final Map<ClassLoader, ForNameCache> forNameCaches =
+            new WeakHashMap<ClassLoader, ForNameCache>(16);
+
+    /**
+     * The most recently used {@link #forName} cache, sparing repeated lookups
+     * with the same ClassLoader the synchronization on {@link #forNameCaches}.
+     */
+    private static volatile ForNameCache lastForNameCache;
+
     static {
         primitiveWrapperTypeMap.put(Boolean.class, boolean.class);
         primitiveWrapperTypeMap.put(Byte.class, byte.class);
@@ -226,6 +267,12 @@ public final class ClassUtils {
      * for primitives (e.g. "int") and array class names (e.g. "String[]").
      * Furthermore, it is also capable of resolving inner class names in Java source
      * style (e.g. "java.lang.Thread.State" instead of "java.lang.Thread$State").
+     * <p>Results are cached per ClassLoader, including, for a few seconds, names
+     * that could not be resolved; call {@link #clearForNameCache(ClassLoader)} if
+     * classes become available to a ClassLoader after they have been looked up.
+     * Neither the ClassLoaders nor the cached classes are kept from being garbage
+     * collected. Names found among the unresolved ones are reported through a
+     * {@code ClassNotFoundException} without a stack trace.
      *
      * @param name        the name of the Class
      * @param classLoader the class loader to use
@@ -272,6 +319,76 @@ public final class ClassUtils {
         if (clToUse == null) {
             clToUse = getDefaultClassLoader();
         }
+        if (clToUse == null) {
+            return loadClass(name, null);
+        }
+        ForNameCache cache = getForNameCache(clToUse);
+        Object cached = cache.get(name);
+        if (cached == CLASS_NOT_FOUND) {
+            throw new CachedClassNotFoundException(name);
+        }
+        if (cached != null) {
+            return (Class<?>) cached;
+        }
+        try {
+            cls = loadClass(name, clToUse);
+        } catch (ClassNotFoundException ex) {
+            cache.putNotFound(name);
+            throw ex;
+        }
+        cache.put(name, cls);
+        return cls;
+    }
+
+    /**
+     * Clear the cache of class names resolved by {@link #forName}, for example
+     * after classes were added to a ClassLoader that could not be found before.
+     */
+    public static void clearForNameCache() {
+        synchronized (forNameCaches) {
+            forNameCaches.clear();
+            lastForNameCache = null;
+        }
+    }
+
+    /**
+     * Clear the cache of class names resolved by {@link #forName} against the given
+     * ClassLoader, for example after it defined classes that could not be found before.
+     *
+     * @param classLoader the ClassLoader to clear the cache for
+     *                    (may be {@code null}, which indicates the default class loader)
+     */
+    public static void clearForNameCache(ClassLoader classLoader) {
+        ClassLoader clToUse = (classLoader != null ? classLoader : getDefaultClassLoader());
+        synchronized (forNameCaches) {
+            forNameCaches.remove(clToUse);
+            ForNameCache cache = lastForNameCache;
+            if (cache != null && cache.getClassLoader() == clToUse) {
+                lastForNameCache = null;
+            }
+        }
+    }
+
+    private static ForNameCache getForNameCache(ClassLoader classLoader) {
+        ForNameCache cache = lastForNameCache;
+        if (cache == null || cache.getClassLoader() != classLoader) {
+            synchronized (forNameCaches) {
+                cache = forNameCaches.get(classLoader);
+                if (cache == null) {
+                    cache = new ForNameCache(classLoader);
+                    forNameCaches.put(classLoader, cache);
+                }
+                lastForNameCache = cache;
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Load the given class, falling back to the inner class name for names in
+     * Java source style.
+     */
+    private static Class<?> loadClass(String name, ClassLoader clToUse) throws ClassNotFoundException {
         try {
             return (clToUse != null ? clToUse.loadClass(name) : Class.forName(name));
         } catch (ClassNotFoundException ex) {
@@ -725,24 +842,19 @@ public final class ClassUtils {
     public static Method getMethodIfAvailable(Class<?> cls, String methodName, Class<?>... paramTypes) {
         Verify.notNull(cls, "Class must not be null");
         Verify.notNull(methodName, "Method name must not be null");
+        Method[] candidates = IntrospectionIndex.forClass(cls).getPublicMethods(methodName);
         if (paramTypes != null) {
-            try {
-                return cls.getMethod(methodName, paramTypes);
-            } catch (NoSuchMethodException ex) {
-                return null;
-            }
-        } else {
-            Set<Method> candidates = new HashSet<Method>(1);
-            Method[] methods = cls.getMethods();
-            for (Method method : methods) {
-                if (methodName.equals(method.getName())) {
-                    candidates.add(method);
+            Method result = null;
+            for (Method candidate : candidates) {
+                // Like Class#getMethod, prefer the most specific return type among covariant overrides
+                if (Arrays.equals(paramTypes, candidate.getParameterTypes()) && (result == null ||
+                        result.getReturnType().isAssignableFrom(candidate.getReturnType()))) {
+                    result = candidate;
                 }
             }
-            if (candidates.size() == 1) {
-                return candidates.iterator().next();
-            }
-            return null;
+            return result;
+        } else {
+            return (candidates.length == 1 ? candidates[0] : null);
         }
     }
 
@@ -759,21 +871,7 @@ public final class ClassUtils {
         Verify.notNull(cls, "Class must not be null");
         Verify.notNull
                 (methodName, "Method name must not be null");
-        int count = 0;
-        Method[] declaredMethods = cls.getDeclaredMethods();
-        for (Method method : declaredMethods) {
-            if (methodName.equals(method.getName())) {
-                count++;
-            }
-        }
-        Class<?>[] ifcs = cls.getInterfaces();
-        for (Class<?> ifc : ifcs) {
-            count += getMethodCountForName(ifc, methodName);
-        }
-        if (cls.getSuperclass() != null) {
-            count += getMethodCountForName(cls.getSuperclass(), methodName);
-        }
-        return count;
+        return IntrospectionIndex.forClass(cls).getMethodCount(methodName);
     }
 
     /**
@@ -789,19 +887,7 @@ public final class ClassUtils {
     public static boolean hasAtLeastOneMethodWithName(Class<?> cls, String methodName) {
         Verify.notNull(cls, "Class must not be  null");
         Verify.notNull(methodName, "Method name must not be null");
-        Method[] declaredMethods = cls.getDeclaredMethods();
-        for (Method method : declaredMethods) {
-            if (method.getName().equals(methodName)) {
-                return true;
-            }
-        }
-        Class<?>[] ifcs = cls.getInterfaces();
-        for (Class<?> ifc : ifcs) {
-            if (hasAtLeastOneMethodWithName(ifc, methodName)) {
-                return true;
-            }
-        }
-        return (cls.getSuperclass() != null && hasAtLeastOneMethodWithName(cls.getSuperclass(), methodName));
+        return (IntrospectionIndex.forClass(cls).getMethodCount(methodName) > 0);
     }
 
     /**
@@ -1486,6 +1572,89 @@ public final class ClassUtils {
         return (className != null && className.contains(CGLIB_CLASS_SEPARATOR));
     }
 
+    /**
+     * Names resolved by {@link #forName} against a single ClassLoader. Resolved names
+     * are mapped to a weak reference to their class; once full, further names are
+     * resolved without being cached. Names that could not be resolved are kept
+     * separately, in a smaller store whose entries expire, since the ClassLoader
+     * may be able to define them later.
+     */
+    private static final class ForNameCache {
+
+        private final WeakReference<ClassLoader> classLoader;
+
+        private final ConcurrentMap<String, WeakReference<Class<?>>> entries =
+                new ConcurrentHashMap<String, WeakReference<Class<?>>>(256);
+
+        private final ConcurrentMap<String, Long> notFoundEntries = new ConcurrentHashMap<String, Long>(16);
+
+        public ForNameCache(ClassLoader classLoader) {
+            this.classLoader = new WeakReference<ClassLoader>(classLoader);
+        }
+
+        public ClassLoader getClassLoader() {
+            return this.classLoader.get();
+        }
+
+        /**
+         * Return the cached class, {@link #CLASS_NOT_FOUND}, or {@code null}
+         * if the name is not cached, its class was collected or its
+         * not-found entry expired.
+         */
+        public Object get(String name) {
+            WeakReference<Class<?>> entry = this.entries.get(name);
+            if (entry != null) {
+                return entry.get();
+            }
+            Long expiry = this.notFoundEntries.get(name);
+            if (expiry != null) {
+                if (expiry - System.nanoTime() > 0) {
+                    return CLASS_NOT_FOUND;
+                }
+                this.notFoundEntries.remove(name, expiry);
+            }
+            return null;
+        }
+
+        public void put(String name, Class<?> cls) {
+            this.notFoundEntries.remove(name);
+            if (this.entries.size() < MAX_FOR_NAME_CACHE_SIZE || this.entries.containsKey(name)) {
+                this.entries.put(name, new WeakReference<Class<?>>(cls));
+            }
+        }
+
+        public void putNotFound(String name) {
+            long now = System.nanoTime();
+            if (this.notFoundEntries.size() >= MAX_NOT_FOUND_CACHE_SIZE) {
+                for (Iterator<Long> it = this.notFoundEntries.values().iterator(); it.hasNext(); ) {
+                    if (it.next() - now <= 0) {
+                        it.remove();
+                    }
+                }
+            }
+            if (this.notFoundEntries.size() < MAX_NOT_FOUND_CACHE_SIZE) {
+                this.notFoundEntries.put(name, now + NOT_FOUND_EXPIRY_NANOS);
+            }
+        }
+    }
+
+    /**
+     * {@link ClassNotFoundException} for a name found among the unresolved names of a
+     * {@link ForNameCache}. Filling in the stack trace would make up most of the cost
+     * that the cache is meant to save, so it is skipped.
+     */
+    private static final class CachedClassNotFoundException extends ClassNotFoundException {
+
+        public CachedClassNotFoundException(String name) {
+            super(name);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
     /**
      * A mutable <code>Object</code> wrapper.
      *
@@ -31,9 +31,6 @@
  */
 package com.proliming.commons.utils;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -42,38 +39,180 @@ import java.io.FilterInputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Simple utility methods for file and stream copying. All copy methods use a block size
- * of 4096 bytes, and close all affected streams when done.
- * //TODO Support java.nio
+ * Simple utility methods for file and stream copying. File copies are delegated to
+ * the operating system through {@link FileChannel#transferTo}/{@link FileChannel#transferFrom}
+ * where possible; stream copies use a {@link BufferPool pooled} buffer of
+ * {@link #STREAM_BUFFER_SIZE} bytes.
+ * All copy methods close the affected streams when done, unless noted otherwise.
  */
 public abstract class CopyUtils {
 
     public static final int BUFFER_SIZE = 4096;
 
+    /**
+     * Size of the buffer used for stream-to-stream copies.
+     */
+    public static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of bytes requested per {@link FileChannel#transferFrom} call
+     * when the source channel size is unknown.
+     */
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
     /**
      * Copy the contents of the given input File to the given output File.
      *
      * @param in  the file to copy from
      * @param out the file to copy to
      *
-     * @return the number of bytes copied
+     * @return the number of bytes copied, or {@link Integer#MAX_VALUE} if
+     * more than that have been copied
      *
      * @throws IOException in case of I/O errors
+     * @see #transfer(File, File)
      */
     public static int copy(File in, File out) throws IOException {
+        return toIntCount(transfer(in, out));
+    }
+
+    /**
+     * Copy the contents of the given input File to the given output File,
+     * letting the operating system move the bytes without copying them
+     * through the Java heap.
+     *
+     * @param in  the file to copy from
+     * @param out the file to copy to, created or truncated as necessary
+     *
+     * @return the number of bytes copied
+     *
+     * @throws IOException in case of I/O errors
+     * @see FileChannel#transferTo(long, long, WritableByteChannel)
+     */
+    public static long transfer(File in, File out) throws IOException {
+        Verify.notNull(in, "No input File specified");
+        Verify.notNull(out, "No output File specified");
+        FileChannel inChannel = new FileInputStream(in).getChannel();
+        try {
+            FileChannel outChannel = new FileOutputStream(out).getChannel();
+            try {
+                return transferFully(inChannel, outChannel);
+            } finally {
+                closeQuietly(outChannel);
+            }
+        } finally {
+            closeQuietly(inChannel);
+        }
+    }
+
+    /**
+     * Copy the contents of the given input File to the given channel, e.g. a
+     * {@link java.nio.channels.SocketChannel}, letting the operating system move
+     * the bytes without copying them through the Java heap.
+     * Leaves the target channel open when done.
+     *
+     * @param in  the file to copy from
+     * @param out the channel to copy to; must be in blocking mode
+     *
+     * @return the number of bytes copied
+     *
+     * @throws IOException in case of I/O errors
+     * @see FileChannel#transferTo(long, long, WritableByteChannel)
+     */
+    public static long transfer(File in, WritableByteChannel out) throws IOException {
         Verify.notNull(in, "No input File specified");
+        Verify.notNull(out, "No output channel specified");
+        Verify.verify(!(out instanceof SelectableChannel) || ((SelectableChannel) out).isBlocking(),
+                "Output channel must be in blocking mode");
+        FileChannel inChannel = new FileInputStream(in).getChannel();
+        try {
+            return transferFully(inChannel, out);
+        } finally {
+            closeQuietly(inChannel);
+        }
+    }
+
+    /**
+     * Copy the contents of the given channel, e.g. a {@link java.nio.channels.SocketChannel},
+     * to the given output File, letting the operating system move the bytes without
+     * copying them through the Java heap where supported.
+     * Leaves the source channel open when done.
+     *
+     * @param in  the channel to copy from; must be in blocking mode
+     * @param out the file to copy to, created or truncated as necessary
+     *
+     * @return the number of bytes copied
+     *
+     * @throws IOException in case of I/O errors
+     * @see FileChannel#transferFrom(ReadableByteChannel, long, long)
+     */
+    public static long transfer(ReadableByteChannel in, File out) throws IOException {
+        Verify.notNull(in, "No input channel specified");
         Verify.notNull(out, "No output File specified");
-        return copy(new BufferedInputStream(new FileInputStream(in)),
-                new BufferedOutputStream(new FileOutputStream(out)));
+        Verify.verify(!(in instanceof SelectableChannel) || ((SelectableChannel) in).isBlocking(),
+                "Input channel must be in blocking mode");
+        FileChannel outChannel = new FileOutputStream(out).getChannel();
+        try {
+            if (in instanceof FileChannel) {
+                return transferFully((FileChannel) in, outChannel);
+            }
+            long position = 0;
+            long transferred;
+            while ((transferred = outChannel.transferFrom(in, position, TRANSFER_CHUNK_SIZE)) > 0) {
+                position += transferred;
+            }
+            return position;
+        } finally {
+            closeQuietly(outChannel);
+        }
+    }
+
+    /**
+     * Transfer the remaining content of the given file channel, starting at its
+     * current position, to the given target channel.
+     */
+    private static long transferFully(FileChannel in, WritableByteChannel out) throws IOException {
+        long start = in.position();
+        long position = start;
+        long size = in.size();
+        while (position < size) {
+            long transferred = in.transferTo(position, size - position, out);
+            if (transferred <= 0) {
+                // The file has been truncated concurrently
+                break;
+            }
+            position += transferred;
+        }
+        in.position(position);
+        return position - start;
     }
 
     /**
@@ -126,6 +265,58 @@ public abstract class CopyUtils {
         }
     }
 
+    /**
+     * Recursively copy the contents of the {@code src} file/directory
+     * to the {@code dest} file/directory, copying files in parallel on the
+     * shared {@linkplain BoundedTaskGroup#getBlockingIoExecutor() blocking I/O executor}.
+     *
+     * @param src  the source directory
+     * @param dest the destination directory
+     *
+     * @return the statistics of the copy
+     *
+     * @throws IOException in the case of I/O errors
+     * @see #copyRecursively(File, File, Executor, int)
+     */
+    public static CopyStats copyRecursivelyInParallel(File src, File dest) throws IOException {
+        return copyRecursively(src, dest, BoundedTaskGroup.getBlockingIoExecutor(),
+                BoundedTaskGroup.BLOCKING_IO_THREADS);
+    }
+
+    /**
+     * Recursively copy the contents of the {@code src} file/directory
+     * to the {@code dest} file/directory, copying files in parallel on the
+     * given executor.
+     * <p>Directories are created by the calling thread while walking the tree;
+     * at most {@code maxInFlight} file copies are submitted to the executor at
+     * any time, so the walk cannot run arbitrarily far ahead of the copies. If
+     * the executor rejects a copy, it is run in the calling thread. File
+     * attributes, including timestamps, are preserved for files and directories.
+     * <p>The first failing copy aborts the walk; the method returns only after
+     * all submitted copies have finished.
+     *
+     * @param src         the source directory
+     * @param dest        the destination directory
+     * @param executor    the executor to run file copies on, e.g. a
+     *                    {@code TaskExecutor}; as copies block on I/O, this
+     *                    should not be the common {@code ForkJoinPool}
+     * @param maxInFlight the maximum number of file copies in progress at a time
+     *
+     * @return the statistics of the copy
+     *
+     * @throws IOException in the case of I/O errors
+     */
+    public static CopyStats copyRecursively(File src, File dest, Executor executor, int maxInFlight)
+            throws IOException {
+        Verify.verify(src != null && (src.isDirectory() || src.isFile()), "Source File must denote a directory or "
+                + "file");
+        Verify.notNull(dest, "Destination File must not be null");
+        Verify.notNull(executor, "Executor must not be null");
+        Verify.verify(maxInFlight > 0, "Max in-flight copies must be positive");
+        ParallelTreeCopier copier = new ParallelTreeCopier(src.toPath(), dest.toPath(), executor, maxInFlight);
+        return copier.copy();
+    }
+
     /**
      * Copy the contents of the given byte array to the given output File.
      *
@@ -137,9 +328,7 @@ public abstract class CopyUtils {
     public static void copy(byte[] in, File out) throws IOException {
         Verify.notNull(in, "No input byte array specified");
         Verify.notNull(out, "No output File specified");
-        ByteArrayInputStream inStream = new ByteArrayInputStream(in);
-        OutputStream outStream = new BufferedOutputStream(new FileOutputStream(out));
-        copy(inStream, outStream);
+        copy(in, new FileOutputStream(out));
     }
 
     /**
@@ -153,7 +342,7 @@ public abstract class CopyUtils {
      */
     public static byte[] copyToByteArray(File in) throws IOException {
         Verify.notNull(in, "No input File specified");
-        return copyToByteArray(new BufferedInputStream(new FileInputStream(in)));
+        return copyToByteArray(new FileInputStream(in));
     }
 
     /**
@@ -171,7 +360,7 @@ public abstract class CopyUtils {
         Verify.notNull(in, "No InputStream specified");
         Verify.notNull(out, "No OutputStream specified");
         try {
-            return copy(in, out);
+            return toIntCount(copyStream(in, out));
         } finally {
             try {
                 in.close();
@@ -184,6 +373,36 @@ public abstract class CopyUtils {
         }
     }
 
+    /**
+     * Copy the contents of the given InputStream to the given OutputStream,
+     * using a pooled stream buffer.
+     * Leaves both streams open when done.
+     *
+     * @param in  the stream to copy from
+     * @param out the stream to copy to
+     *
+     * @return the number of bytes copied
+     *
+     * @throws IOException in case of I/O errors
+     */
+    public static long copyStream(InputStream in, OutputStream out) throws IOException {
+        Verify.notNull(in, "No InputStream specified");
+        Verify.notNull(out, "No OutputStream specified");
+        byte[] buffer = BufferPool.acquireHeap(STREAM_BUFFER_SIZE);
+        try {
+            long byteCount = 0;
+            int bytesRead;
+            while ((bytesRead = in.read(buffer)) != -1) {
+                out.write(buffer, 0, bytesRead);
+                byteCount += bytesRead;
+            }
+            out.flush();
+            return byteCount;
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
     /**
      * Copy the contents of the given byte array to the given OutputStream.
      * Closes the stream when done.
@@ -369,6 +588,201 @@ public abstract class CopyUtils {
         return new NonClosingOutputStream(out);
     }
 
+    /**
+     * Aggregate statistics of a recursive copy.
+     *
+     * @see #copyRecursively(File, File, Executor, int)
+     */
+    public static final class CopyStats {
+
+        private final long fileCount;
+
+        private final long directoryCount;
+
+        private final long byteCount;
+
+        private final long elapsedMillis;
+
+        CopyStats(long fileCount, long directoryCount, long byteCount, long elapsedMillis) {
+            this.fileCount = fileCount;
+            this.directoryCount = directoryCount;
+            this.byteCount = byteCount;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /**
+         * Return the number of files copied.
+         */
+        public long getFileCount() {
+            return this.fileCount;
+        }
+
+        /**
+         * Return the number of directories created, not counting target
+         * directories that already existed.
+         */
+        public long getDirectoryCount() {
+            return this.directoryCount;
+        }
+
+        /**
+         * Return the total number of bytes copied.
+         */
+        public long getByteCount() {
+            return this.byteCount;
+        }
+
+        /**
+         * Return the wall-clock time the copy took, in milliseconds.
+         */
+        public long getElapsedMillis() {
+            return this.elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "CopyStats [files=" + this.fileCount + ", directories=" + this.directoryCount +
+                    ", bytes=" + this.byteCount + ", elapsed=" + this.elapsedMillis + "ms]";
+        }
+    }
+
+    /**
+     * Walks a file tree, creating directories in the walking thread and
+     * handing file copies over to an executor with bounded concurrency.
+     */
+    private static class ParallelTreeCopier extends SimpleFileVisitor<Path> {
+
+        private final Path source;
+
+        private final Path target;
+
+        private final BoundedTaskGroup tasks;
+
+        private final AtomicReference<IOException> failure = new AtomicReference<IOException>();
+
+        private final AtomicLong fileCount = new AtomicLong();
+
+        private final AtomicLong byteCount = new AtomicLong();
+
+        private long directoryCount;
+
+        private final List<Path> sourceDirectories = new ArrayList<Path>();
+
+        private final List<Path> targetDirectories = new ArrayList<Path>();
+
+        public ParallelTreeCopier(Path source, Path target, Executor executor, int maxInFlight) {
+            this.source = source;
+            this.target = target;
+            this.tasks = new BoundedTaskGroup(executor, maxInFlight);
+        }
+
+        public CopyStats copy() throws IOException {
+            long start = System.nanoTime();
+            try {
+                Files.walkFileTree(this.source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, this);
+            } finally {
+                awaitCompletion();
+            }
+            IOException ex = this.failure.get();
+            if (ex != null) {
+                throw ex;
+            }
+            // Directory timestamps change while their content is written: restore them last,
+            // innermost directories first
+            for (int i = this.sourceDirectories.size() - 1; i >= 0; i--) {
+                FileTime lastModified = Files.getLastModifiedTime(this.sourceDirectories.get(i));
+                Files.setLastModifiedTime(this.targetDirectories.get(i), lastModified);
+            }
+            long elapsedMillis = (System.nanoTime() - start) / 1000000;
+            return new CopyStats(this.fileCount.get(), this.directoryCount, this.byteCount.get(), elapsedMillis);
+        }
+
+        @Override
+        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+            if (this.failure.get() != null) {
+                return FileVisitResult.TERMINATE;
+            }
+            Path targetDir = resolveTarget(dir);
+            if (!Files.isDirectory(targetDir)) {
+                Files.createDirectories(targetDir);
+                this.directoryCount++;
+            }
+            this.sourceDirectories.add(dir);
+            this.targetDirectories.add(targetDir);
+            return FileVisitResult.CONTINUE;
+        }
+
+        @Override
+        public FileVisitResult visitFile(final Path file, final BasicFileAttributes attrs) throws IOException {
+            if (!attrs.isRegularFile()) {
+                // Special file handle: neither a file nor a directory. Simply skip it...
+                return FileVisitResult.CONTINUE;
+            }
+            if (this.failure.get() != null) {
+                return FileVisitResult.TERMINATE;
+            }
+            final Path targetFile = resolveTarget(file);
+            try {
+                this.tasks.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        copyFile(file, targetFile, attrs.size());
+                    }
+                });
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while copying " + this.source);
+            }
+            return FileVisitResult.CONTINUE;
+        }
+
+        private void copyFile(Path file, Path targetFile, long size) {
+            if (this.failure.get() != null) {
+                return;
+            }
+            try {
+                Files.copy(file, targetFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+                this.fileCount.incrementAndGet();
+                this.byteCount.addAndGet(size);
+            } catch (IOException ex) {
+                fail(ex);
+            } catch (RuntimeException ex) {
+                fail(new IOException("Failed to copy file: " + file, ex));
+            }
+        }
+
+        private void fail(IOException ex) {
+            if (this.failure.compareAndSet(null, ex)) {
+                // Skip copies that have not started yet
+                this.tasks.cancel();
+            }
+        }
+
+        private Path resolveTarget(Path path) {
+            return this.target.resolve(this.source.relativize(path).toString());
+        }
+
+        private void awaitCompletion() throws InterruptedIOException {
+            try {
+                this.tasks.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for copies of " + this.source);
+            }
+        }
+    }
+
+    private static int toIntCount(long count) {
+        return (count > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) count);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ex) {
+        }
+    }
+
     private static class NonClosingInputStream extends FilterInputStream {
 
         public NonClosingInputStream(InputStream in) {
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-class index of the methods and fields visible through a class hierarchy,
+ * backing the method and field lookups of {@link ReflectionUtils} and {@link ClassUtils}.
+ * <p/>
+ * <p>Each index is built once per class and cached along with the class, turning
+ * lookups that would walk the superclasses and interfaces into hash probes. Every
+ * part of the index is built on first use only, so that a lookup never introspects
+ * more than the equivalent hierarchy walk would: looking up a field, for example,
+ * does not resolve method signatures, which may fail for classes with missing
+ * optional dependencies.
+ */
+final class IntrospectionIndex {
+
+    private static final Method[] EMPTY_METHOD_ARRAY = new Method[0];
+
+    private static final Field[] EMPTY_FIELD_ARRAY = new Field[0];
+
+    private static final ClassCache<IntrospectionIndex> indexCache = new ClassCache<IntrospectionIndex>() {
+        @Override
+        protected IntrospectionIndex computeValue(Class<?> type) {
+            return new IntrospectionIndex(type);
+        }
+    };
+
+    private final Class<?> type;
+
+    private volatile Map<String, Field[]> fieldsByName;
+
+    private volatile Map<String, Method[]> methodsByName;
+
+    private volatile Map<MethodKey, Method> methodsBySignature;
+
+    private volatile Map<String, Method[]> publicMethodsByName;
+
+    private volatile Map<String, Integer> methodCounts;
+
+    private IntrospectionIndex(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * Return the index for the given class.
+     */
+    static IntrospectionIndex forClass(Class<?> type) {
+        return indexCache.get(type);
+    }
+
+    /**
+     * Discard the index of the given class. The indexes of its subclasses, which
+     * include the members of the class, are not discarded along with it.
+     */
+    static void clear(Class<?> type) {
+        indexCache.remove(type);
+    }
+
+    /**
+     * Return the statistics of the index cache.
+     */
+    static ClassCache.Stats getStats() {
+        return indexCache.getStats();
+    }
+
+    /**
+     * Find the first field with the given name and, if specified, type, searching
+     * the class and its superclasses up to {@code Object}, nearest first.
+     *
+     * @see ReflectionUtils#findField(Class, String, Class)
+     */
+    Field findField(String name, Class<?> fieldType) {
+        Map<String, Field[]> fieldsByName = this.fieldsByName;
+        if (fieldsByName == null) {
+            fieldsByName = indexFields();
+            this.fieldsByName = fieldsByName;
+        }
+        Field[] fields = fieldsByName.get(name);
+        if (fields != null) {
+            for (Field field : fields) {
+                if (fieldType == null || fieldType.equals(field.getType())) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Find the first method with the given name and, if specified, parameter types,
+     * searching the class and its superclasses, nearest first; for each class, its
+     * declared methods and the default methods of its interfaces are considered.
+     *
+     * @see ReflectionUtils#findMethod(Class, String, Class[])
+     */
+    Method findMethod(String name, Class<?>[] paramTypes) {
+        if (paramTypes == null) {
+            Map<String, Method[]> methodsByName = this.methodsByName;
+            if (methodsByName == null) {
+                indexMethods();
+                methodsByName = this.methodsByName;
+            }
+            Method[] methods = methodsByName.get(name);
+            return (methods != null ? methods[0] : null);
+        }
+        Map<MethodKey, Method> methodsBySignature = this.methodsBySignature;
+        if (methodsBySignature == null) {
+            methodsBySignature = indexMethods();
+        }
+        return methodsBySignature.get(new MethodKey(name, paramTypes));
+    }
+
+    /**
+     * Return the public methods of the class, including inherited ones,
+     * with the given name.
+     *
+     * @see Class#getMethods()
+     */
+    Method[] getPublicMethods(String name) {
+        Map<String, Method[]> publicMethodsByName = this.publicMethodsByName;
+        if (publicMethodsByName == null) {
+            publicMethodsByName = groupByName(Arrays.asList(this.type.getMethods()));
+            this.publicMethodsByName = publicMethodsByName;
+        }
+        Method[] methods = publicMethodsByName.get(name);
+        return (methods != null ? methods : EMPTY_METHOD_ARRAY);
+    }
+
+    /**
+     * Return the number of methods with the given name declared in the class,
+     * its interfaces and its superclasses, counting a method once per path through
+     * which it is reachable.
+     *
+     * @see ClassUtils#getMethodCountForName(Class, String)
+     */
+    int getMethodCount(String name) {
+        Integer count = getMethodCounts().get(name);
+        return (count != null ? count : 0);
+    }
+
+    private Map<String, Field[]> indexFields() {
+        Map<String, List<Field>> fields = new LinkedHashMap<String, List<Field>>();
+        for (Class<?> searchType = this.type; searchType != null && searchType != Object.class;
+                searchType = searchType.getSuperclass()) {
+            for (Field field : ReflectionUtils.getDeclaredFields(searchType)) {
+                List<Field> named = fields.get(field.getName());
+                if (named == null) {
+                    named = new ArrayList<Field>(1);
+                    fields.put(field.getName(), named);
+                }
+                named.add(field);
+            }
+        }
+        Map<String, Field[]> result = new HashMap<String, Field[]>(fields.size() * 2);
+        for (Map.Entry<String, List<Field>> entry : fields.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(EMPTY_FIELD_ARRAY));
+        }
+        return result;
+    }
+
+    private Map<MethodKey, Method> indexMethods() {
+        List<Method> methods = new ArrayList<Method>();
+        for (Class<?> searchType = this.type; searchType != null; searchType = searchType.getSuperclass()) {
+            methods.addAll(Arrays.asList(searchType.isInterface() ? searchType.getMethods() :
+                                                 ReflectionUtils.getDeclaredMethods(searchType)));
+        }
+        Map<MethodKey, Method> methodsBySignature = new HashMap<MethodKey, Method>(methods.size() * 2);
+        for (Method method : methods) {
+            MethodKey key = new MethodKey(method.getName(), method.getParameterTypes());
+            if (!methodsBySignature.containsKey(key)) {
+                methodsBySignature.put(key, method);
+            }
+        }
+        this.methodsByName = groupByName(methods);
+        this.methodsBySignature = methodsBySignature;
+        return methodsBySignature;
+    }
+
+    private Map<String, Integer> countMethods() {
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        addMethodCounts(counts, this.type);
+        return counts;
+    }
+
+    /**
+     * Add the counts of the given class and its ancestors by walking the hierarchy,
+     * rather than through the indexes of the ancestors: those may come from a parent
+     * or the bootstrap ClassLoader, which must not hold on to an index.
+     */
+    private static void addMethodCounts(Map<String, Integer> counts, Class<?> type) {
+        for (Method method : type.getDeclaredMethods()) {
+            addCount(counts, method.getName(), 1);
+        }
+        for (Class<?> ifc : type.getInterfaces()) {
+            addMethodCounts(counts, ifc);
+        }
+        if (type.getSuperclass() != null) {
+            addMethodCounts(counts, type.getSuperclass());
+        }
+    }
+
+    private Map<String, Integer> getMethodCounts() {
+        Map<String, Integer> methodCounts = this.methodCounts;
+        if (methodCounts == null) {
+            methodCounts = countMethods();
+            this.methodCounts = methodCounts;
+        }
+        return methodCounts;
+    }
+
+    private static void addCount(Map<String, Integer> counts, String name, int count) {
+        Integer current = counts.get(name);
+        counts.put(name, (current != null ? current + count : count));
+    }
+
+    private static Map<String, Method[]> groupByName(List<Method> methods) {
+        Map<String, List<Method>> grouped = new LinkedHashMap<String, List<Method>>();
+        for (Method method : methods) {
+            List<Method> named = grouped.get(method.getName());
+            if (named == null) {
+                named = new ArrayList<Method>(1);
+                grouped.put(method.getName(), named);
+            }
+            named.add(method);
+        }
+        Map<String, Method[]> result = new HashMap<String, Method[]>(grouped.size() * 2);
+        for (Map.Entry<String, List<Method>> entry : grouped.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toArray(EMPTY_METHOD_ARRAY));
+        }
+        return result;
+    }
+
+    /**
+     * Key of a method by name and parameter types.
+     */
+    private static final class MethodKey {
+
+        private final String name;
+
+        private final Class<?>[] paramTypes;
+
+        private final int hashCode;
+
+        public MethodKey(String name, Class<?>[] paramTypes) {
+            this.name = name;
+            this.paramTypes = paramTypes;
+            this.hashCode = name.hashCode() * 31 + Arrays.hashCode(paramTypes);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof MethodKey)) {
+                return false;
+            }
+            MethodKey otherKey = (MethodKey) other;
+            return (this.name.equals(otherKey.name) && Arrays.equals(this.paramTypes, otherKey.paramTypes));
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hashCode;
+        }
+    }
+
+}
@@ -32,6 +32,12 @@
 
 package com.proliming.commons.utils;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.WrongMethodTypeException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -43,8 +49,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Simple utility class for working with the reflection API and handling
@@ -65,14 +76,46 @@ public class ReflectionUtils {
      * Cache for {@link Class#getDeclaredMethods()} plus equivalent default methods
      * from Java 8 based interfaces, allowing for fast iteration.
      */
-    private static final Map<Class<?>, Method[]> declaredMethodsCache =
-            new ConcurrentHashMap<Class<?>, Method[]>(256);
+    private static final ClassCache<Method[]> declaredMethodsCache = new ClassCache<Method[]>() {
+        @Override
+        protected Method[] computeValue(Class<?> type) {
+            return introspectDeclaredMethods(type);
+        }
+    };
 
     /**
      * Cache for {@link Class#getDeclaredFields()}, allowing for fast iteration.
      */
-    private static final Map<Class<?>, Field[]> declaredFieldsCache =
-            new ConcurrentHashMap<Class<?>, Field[]>(256);
+    private static final ClassCache<Field[]> declaredFieldsCache = new ClassCache<Field[]>() {
+        @Override
+        protected Field[] computeValue(Class<?> type) {
+            return type.getDeclaredFields();
+        }
+    };
+
+    /**
+     * Cache for {@link FieldAccessor} instances compiled from fields,
+     * keyed by declaring class.
+     */
+    private static final ClassCache<ConcurrentMap<Field, FieldAccessor>> fieldAccessorCache =
+            new ClassCache<ConcurrentMap<Field, FieldAccessor>>() {
+                @Override
+                protected ConcurrentMap<Field, FieldAccessor> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<Field, FieldAccessor>(16);
+                }
+            };
+
+    /**
+     * Cache for {@link MethodInvoker} instances compiled from methods,
+     * keyed by declaring class.
+     */
+    private static final ClassCache<ConcurrentMap<Method, MethodInvoker>> methodInvokerCache =
+            new ClassCache<ConcurrentMap<Method, MethodInvoker>>() {
+                @Override
+                protected ConcurrentMap<Method, MethodInvoker> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<Method, MethodInvoker>(16);
+                }
+            };
 
     /**
      * Attempt to find a {@link Field field} on the supplied {@link Class} with the
@@ -91,6 +134,8 @@ public class ReflectionUtils {
      * Attempt to find a {@link Field field} on the supplied {@link Class} with the
      * supplied {@code name} and/or {@link Class type}. Searches all superclasses
      * up to {@link Object}.
+     * <p>Lookups by name are served from an index of the class hierarchy's fields,
+     * which is built once per class.
      *
      * @param cls  the class to introspect
      * @param name the name of the field (may be {@code null} if type is specified)
@@ -101,6 +146,9 @@ public class ReflectionUtils {
     public static Field findField(Class<?> cls, String name, Class<?> type) {
         Verify.notNull(cls, "Class must not be null");
         Verify.verify(name != null || type != null, "Either name or type of the field must be specified");
+        if (name != null) {
+            return IntrospectionIndex.forClass(cls).findField(name, type);
+        }
         Class<?> searchType = cls;
         while (Object.class != searchType && searchType != null) {
             Field[] fields = getDeclaredFields(searchType);
@@ -175,6 +223,8 @@ public class ReflectionUtils {
     /**
      * Attempt to find a {@link Method} on the supplied class with the supplied name
      * and parameter types. Searches all superclasses up to {@code Object}.
+     * <p>Lookups are served from an index of the class hierarchy's methods,
+     * which is built once per class.
      * <p>Returns {@code null} if no {@link Method} can be found.
      *
      * @param cls        the class to introspect
@@ -187,18 +237,7 @@ public class ReflectionUtils {
     public static Method findMethod(Class<?> cls, String name, Class<?>... paramTypes) {
         Verify.notNull(cls, "Class must not be null");
         Verify.notNull(name, "Method name must not be null");
-        Class<?> searchType = cls;
-        while (searchType != null) {
-            Method[] methods = (searchType.isInterface() ? searchType.getMethods() : getDeclaredMethods(searchType));
-            for (Method method : methods) {
-                if (name.equals(method.getName()) &&
-                        (paramTypes == null || Arrays.equals(paramTypes, method.getParameterTypes()))) {
-                    return method;
-                }
-            }
-            searchType = searchType.getSuperclass();
-        }
-        return null;
+        return IntrospectionIndex.forClass(cls).findMethod(name, paramTypes);
     }
 
     /**
@@ -238,6 +277,62 @@ public class ReflectionUtils {
         throw new IllegalStateException("Should never get here");
     }
 
+    /**
+     * Return a {@link FieldAccessor} for the given field, compiled into
+     * {@link MethodHandle}s once and cached for subsequent calls.
+     * <p>Unlike {@link #getField} and {@link #setField}, the returned accessor
+     * performs no access checks per call, and its primitive getters such as
+     * {@link FieldAccessor#getInt} read primitive fields without boxing. The
+     * field is made accessible as necessary.
+     *
+     * @param field the field to access
+     *
+     * @return the cached accessor for the field
+     */
+    public static FieldAccessor getFieldAccessor(Field field) {
+        Verify.notNull(field, "Field must not be null");
+        ConcurrentMap<Field, FieldAccessor> accessors = fieldAccessorCache.get(field.getDeclaringClass());
+        FieldAccessor accessor = accessors.get(field);
+        if (accessor == null) {
+            makeAccessible(field);
+            accessor = new MethodHandleFieldAccessor(field);
+            FieldAccessor existing = accessors.putIfAbsent(field, accessor);
+            if (existing != null) {
+                accessor = existing;
+            }
+        }
+        return accessor;
+    }
+
+    /**
+     * Return a {@link MethodInvoker} for the given method, compiled once and cached
+     * for subsequent calls.
+     * <p>Public methods with up to two parameters, counting the target of an instance
+     * method, are called through a class generated by {@link LambdaMetafactory}, as for
+     * a method reference, provided that the method's types are visible to the
+     * ClassLoader of this class; all other methods through a {@link MethodHandle}.
+     * Unlike {@link #invokeMethod}, the returned invoker performs no access
+     * checks per call. The method is made accessible as necessary.
+     *
+     * @param method the method to invoke
+     *
+     * @return the cached invoker for the method
+     */
+    public static MethodInvoker getMethodInvoker(Method method) {
+        Verify.notNull(method, "Method must not be null");
+        ConcurrentMap<Method, MethodInvoker> invokers = methodInvokerCache.get(method.getDeclaringClass());
+        MethodInvoker invoker = invokers.get(method);
+        if (invoker == null) {
+            makeAccessible(method);
+            invoker = LambdaMethodInvoker.create(method);
+            MethodInvoker existing = invokers.putIfAbsent(method, invoker);
+            if (existing != null) {
+                invoker = existing;
+            }
+        }
+        return invoker;
+    }
+
     /**
      * Invoke the specified JDBC API {@link Method} against the supplied target
      * object with no arguments.
@@ -630,23 +725,22 @@ public class ReflectionUtils {
      *
      * @see Class#getDeclaredMethods()
      */
-    private static Method[] getDeclaredMethods(Class<?> cls) {
-        Method[] result = declaredMethodsCache.get(cls);
-        if (result == null) {
-            Method[] declaredMethods = cls.getDeclaredMethods();
-            List<Method> defaultMethods = findConcreteMethodsOnInterfaces(cls);
-            if (defaultMethods != null) {
-                result = new Method[declaredMethods.length + defaultMethods.size()];
-                System.arraycopy(declaredMethods, 0, result, 0, declaredMethods.length);
-                int index = declaredMethods.length;
-                for (Method defaultMethod : defaultMethods) {
-                    result[index] = defaultMethod;
-                    index++;
-                }
-            } else {
-                result = declaredMethods;
-            }
-            declaredMethodsCache.put(cls, result);
+    static Method[] getDeclaredMethods(Class<?> cls) {
+        return declaredMethodsCache.get(cls);
+    }
+
+    private static Method[] introspectDeclaredMethods(Class<?> cls) {
+        Method[] declaredMethods = cls.getDeclaredMethods();
+        List<Method> defaultMethods = findConcreteMethodsOnInterfaces(cls);
+        if (defaultMethods == null) {
+            return declaredMethods;
+        }
+        Method[] result = new Method[declaredMethods.length + defaultMethods.size()];
+        System.arraycopy(declaredMethods, 0, result, 0, declaredMethods.length);
+        int index = declaredMethods.length;
+        for (Method defaultMethod : defaultMethods) {
+            result[index] = defaultMethod;
+            index++;
         }
         return result;
     }
@@ -735,19 +829,51 @@ public class ReflectionUtils {
      *
      * @see Class#getDeclaredFields()
      */
-    private static Field[] getDeclaredFields(Class<?> cls) {
-        Field[] result = declaredFieldsCache.get(cls);
-        if (result == null) {
-            result = cls.getDeclaredFields();
-            declaredFieldsCache.put(cls, result);
-        }
-        return result;
+    static Field[] getDeclaredFields(Class<?> cls) {
+        return declaredFieldsCache.get(cls);
+    }
+
+    /**
+     * Clear the cached reflection metadata of the given class, for example after
+     * instrumentation redefined it. Classes of a discarded ClassLoader never need
+     * to be cleared, since their metadata is cached along with the class itself.
+     * <p>The metadata of subclasses, which include the methods and fields they
+     * inherit from the given class, is not cleared: after redefining a class,
+     * clear its loaded subclasses as well.
+     *
+     * @param cls the class to clear the metadata for
+     */
+    public static void clearCache(Class<?> cls) {
+        declaredMethodsCache.remove(cls);
+        declaredFieldsCache.remove(cls);
+        fieldAccessorCache.remove(cls);
+        methodInvokerCache.remove(cls);
+        IntrospectionIndex.clear(cls);
+    }
+
+    /**
+     * Return the statistics of the cache for declared methods, which backs
+     * the method lookups and callbacks of this class.
+     */
+    public static ClassCache.Stats getDeclaredMethodsCacheStats() {
+        return declaredMethodsCache.getStats();
+    }
+
+    /**
+     * Return the statistics of the cache for declared fields, which backs
+     * the field lookups and callbacks of this class.
+     */
+    public static ClassCache.Stats getDeclaredFieldsCacheStats() {
+        return declaredFieldsCache.getStats();
     }
 
     /**
      * Given the source object and the destination, which must be the same class
      * or a subclass, copy all fields, including inherited fields. Designed to
      * work on objects with public no-arg constructors.
+     * <p>The copy plan for each class pair is computed once and cached.
+     *
+     * @see BeanCopier
      */
     public static void shallowCopyFieldState(final Object src, final Object dest) {
         if (src == null) {
@@ -760,14 +886,7 @@ public class ReflectionUtils {
             throw new IllegalArgumentException("Destination class [" + dest.getClass().getName() +
                     "] must be same or subclass as source class [" + src.getClass().getName() + "]");
         }
-        doWithFields(src.getClass(), new FieldCallback() {
-            @Override
-            public void doWith(Field field) throws IllegalArgumentException, IllegalAccessException {
-                makeAccessible(field);
-                Object srcValue = field.get(src);
-                field.set(dest, srcValue);
-            }
-        }, COPYABLE_FIELDS);
+        BeanCopier.create(src.getClass(), dest.getClass()).copy(src, dest);
     }
 
     /**
@@ -822,6 +941,559 @@ public class ReflectionUtils {
         boolean matches(Field field);
     }
 
+    /**
+     * Compiled accessor for a single field, obtained through {@link #getFieldAccessor}.
+     * <p>The target object is ignored for static fields. Thrown exceptions follow
+     * {@link Field} semantics: an {@code IllegalArgumentException} if the target
+     * is not an instance of the declaring class or the value cannot be converted.
+     */
+    public interface FieldAccessor {
+
+        /**
+         * Return the underlying field.
+         */
+        Field getField();
+
+        /**
+         * Get the field's current value, wrapped if the field has a primitive type.
+         *
+         * @param target the target object from which to get the field
+         */
+        Object get(Object target);
+
+        /**
+         * Set the field to the given value, unwrapped if the field has a primitive type.
+         *
+         * @param target the target object on which to set the field
+         * @param value  the value to set; may be {@code null}
+         */
+        void set(Object target, Object value);
+
+        boolean getBoolean(Object target);
+
+        byte getByte(Object target);
+
+        char getChar(Object target);
+
+        short getShort(Object target);
+
+        int getInt(Object target);
+
+        long getLong(Object target);
+
+        float getFloat(Object target);
+
+        double getDouble(Object target);
+    }
+
+    /**
+     * Compiled invoker for a single method, obtained through {@link #getMethodInvoker}.
+     */
+    public interface MethodInvoker {
+
+        /**
+         * Return the underlying method.
+         */
+        Method getMethod();
+
+        /**
+         * Invoke the method against the supplied target object with the supplied
+         * arguments. The target object can be {@code null} for a static method.
+         * <p>Exceptions thrown by the method are handled via a call to
+         * {@link #rethrowRuntimeException}.
+         *
+         * @param target the target object to invoke the method on
+         * @param args   the invocation arguments (may be {@code null})
+         *
+         * @return the invocation result, or {@code null} for a void method
+         */
+        Object invoke(Object target, Object... args);
+    }
+
+    /**
+     * {@link FieldAccessor} backed by getter and setter {@link MethodHandle}s, adapted
+     * to exact types so that each call is a single {@code invokeExact}. A primitive
+     * getter is only available where {@link Field} would allow the same widening
+     * or unboxing conversion; a final field is set reflectively.
+     */
+    private static final class MethodHandleFieldAccessor implements FieldAccessor {
+
+        private final Field field;
+
+        private final MethodHandle getter;
+
+        private final MethodHandle setter;
+
+        private final MethodHandle booleanGetter;
+
+        private final MethodHandle byteGetter;
+
+        private final MethodHandle charGetter;
+
+        private final MethodHandle shortGetter;
+
+        private final MethodHandle intGetter;
+
+        private final MethodHandle longGetter;
+
+        private final MethodHandle floatGetter;
+
+        private final MethodHandle doubleGetter;
+
+        public MethodHandleFieldAccessor(Field field) {
+            this.field = field;
+            boolean isStatic = Modifier.isStatic(field.getModifiers());
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            MethodHandle getter;
+            try {
+                getter = lookup.unreflectGetter(field);
+            } catch (IllegalAccessException ex) {
+                handleReflectionException(ex);
+                throw new IllegalStateException("Should never get here");
+            }
+            if (isStatic) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            MethodHandle setter = null;
+            if (!Modifier.isFinal(field.getModifiers())) {
+                try {
+                    setter = lookup.unreflectSetter(field);
+                    if (isStatic) {
+                        setter = MethodHandles.dropArguments(setter, 0, Object.class);
+                    }
+                    setter = setter.asType(MethodType.methodType(void.class, Object.class, Object.class));
+                } catch (IllegalAccessException ex) {
+                    setter = null;
+                }
+            }
+            this.getter = getter.asType(MethodType.methodType(Object.class, Object.class));
+            this.setter = setter;
+            this.booleanGetter = adapt(getter, boolean.class);
+            this.byteGetter = adapt(getter, byte.class);
+            this.charGetter = adapt(getter, char.class);
+            this.shortGetter = adapt(getter, short.class);
+            this.intGetter = adapt(getter, int.class);
+            this.longGetter = adapt(getter, long.class);
+            this.floatGetter = adapt(getter, float.class);
+            this.doubleGetter = adapt(getter, double.class);
+        }
+
+        private MethodHandle adapt(MethodHandle getter, Class<?> primitiveType) {
+            Class<?> fieldType = this.field.getType();
+            if (!fieldType.isPrimitive() && ClassUtils.resolvePrimitiveIfNecessary(primitiveType) != fieldType) {
+                return null;
+            }
+            try {
+                return getter.asType(MethodType.methodType(primitiveType, Object.class));
+            } catch (WrongMethodTypeException ex) {
+                return null;
+            }
+        }
+
+        @Override
+        public Field getField() {
+            return this.field;
+        }
+
+        @Override
+        public Object get(Object target) {
+            try {
+                return (Object) this.getter.invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public void set(Object target, Object value) {
+            if (this.setter == null) {
+                setField(this.field, target, value);
+                return;
+            }
+            try {
+                this.setter.invokeExact(target, value);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public boolean getBoolean(Object target) {
+            try {
+                return (boolean) checkGetter(this.booleanGetter, boolean.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public byte getByte(Object target) {
+            try {
+                return (byte) checkGetter(this.byteGetter, byte.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public char getChar(Object target) {
+            try {
+                return (char) checkGetter(this.charGetter, char.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public short getShort(Object target) {
+            try {
+                return (short) checkGetter(this.shortGetter, short.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public int getInt(Object target) {
+            try {
+                return (int) checkGetter(this.intGetter, int.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public long getLong(Object target) {
+            try {
+                return (long) checkGetter(this.longGetter, long.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public float getFloat(Object target) {
+            try {
+                return (float) checkGetter(this.floatGetter, float.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        @Override
+        public double getDouble(Object target) {
+            try {
+                return (double) checkGetter(this.doubleGetter, double.class).invokeExact(target);
+            } catch (Throwable ex) {
+                throw translate(ex, target);
+            }
+        }
+
+        private MethodHandle checkGetter(MethodHandle getter, Class<?> primitiveType) {
+            if (getter == null) {
+                throw new IllegalArgumentException("Cannot get " + primitiveType.getName() + " value of field '" +
+                        this.field.getName() + "' of type [" + this.field.getType().getName() + "]");
+            }
+            return getter;
+        }
+
+        private RuntimeException translate(Throwable ex, Object target) {
+            // A null target is reported as is; any other NPE stems from unboxing a null value
+            if (ex instanceof ClassCastException || (ex instanceof NullPointerException &&
+                    (target != null || Modifier.isStatic(this.field.getModifiers())))) {
+                throw new IllegalArgumentException("Cannot access field '" + this.field.getName() + "' of " +
+                        this.field.getDeclaringClass().getName() + " on target [" + target + "]", ex);
+            }
+            rethrowRuntimeException(ex);
+            throw new IllegalStateException("Should never get here");
+        }
+    }
+
+    /**
+     * {@link MethodInvoker} backed by a {@link MethodHandle} adapted to take the target
+     * and an argument array, so that each call is a single {@code invokeExact}.
+     */
+    private static final class MethodHandleInvoker implements MethodInvoker {
+
+        private static final Object[] EMPTY_ARGS = new Object[0];
+
+        private final Method method;
+
+        private final MethodHandle handle;
+
+        public MethodHandleInvoker(Method method) {
+            this.method = method;
+            MethodHandle handle;
+            try {
+                handle = MethodHandles.lookup().unreflect(method).asFixedArity();
+            } catch (IllegalAccessException ex) {
+                handleReflectionException(ex);
+                throw new IllegalStateException("Should never get here");
+            }
+            int parameterCount = method.getParameterTypes().length;
+            if (Modifier.isStatic(method.getModifiers())) {
+                handle = MethodHandles.dropArguments(handle, 0, Object.class);
+            }
+            this.handle = handle.asType(MethodType.genericMethodType(parameterCount + 1))
+                    .asSpreader(Object[].class, parameterCount);
+        }
+
+        @Override
+        public Method getMethod() {
+            return this.method;
+        }
+
+        @Override
+        public Object invoke(Object target, Object... args) {
+            Object[] arguments = (args != null ? args : EMPTY_ARGS);
+            try {
+                return (Object) this.handle.invokeExact(target, arguments);
+            } catch (Throwable ex) {
+                // Thrown by the argument conversions of the handle, or else by the method itself
+                if ((ex instanceof ClassCastException || ex instanceof NullPointerException) &&
+                        !isApplicable(this.method, target, arguments)) {
+                    throw new IllegalArgumentException("Cannot invoke method '" + this.method.getName() +
+                            "' of " + this.method.getDeclaringClass().getName() + " on target [" + target +
+                            "] with arguments " + Arrays.toString(arguments), ex);
+                }
+                rethrowRuntimeException(ex);
+                throw new IllegalStateException("Should never get here");
+            }
+        }
+
+        /**
+         * Determine whether {@link Method#invoke} would accept the given target and
+         * arguments, leaving a {@code null} target of an instance method to fail as is.
+         */
+        private static boolean isApplicable(Method method, Object target, Object[] args) {
+            if (target != null && !Modifier.isStatic(method.getModifiers()) &&
+                    !method.getDeclaringClass().isInstance(target)) {
+                return false;
+            }
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            if (args.length != parameterTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                if (!isConvertible(args[i], parameterTypes[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static boolean isConvertible(Object value, Class<?> type) {
+            if (!type.isPrimitive()) {
+                return (value == null || type.isInstance(value));
+            }
+            if (value == null) {
+                return false;
+            }
+            Class<?> valueType = value.getClass();
+            if (ClassUtils.resolvePrimitiveIfNecessary(type) == valueType) {
+                return true;
+            }
+            // Widening primitive conversions; none lead to char, or from char to short
+            if (type == char.class || (valueType == Character.class && type == short.class)) {
+                return false;
+            }
+            int valueRank = getWideningRank(valueType);
+            return (valueRank > 0 && getWideningRank(type) > valueRank);
+        }
+
+        private static int getWideningRank(Class<?> type) {
+            if (type == byte.class || type == Byte.class) {
+                return 1;
+            }
+            if (type == short.class || type == Short.class || type == char.class || type == Character.class) {
+                return 2;
+            }
+            if (type == int.class || type == Integer.class) {
+                return 3;
+            }
+            if (type == long.class || type == Long.class) {
+                return 4;
+            }
+            if (type == float.class || type == Float.class) {
+                return 5;
+            }
+            if (type == double.class || type == Double.class) {
+                return 6;
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * {@link MethodInvoker} calling the method through a functional interface
+     * implemented by {@link LambdaMetafactory}, so that each call is a plain
+     * interface call that the JIT compiler can inline. Calls whose arguments need
+     * a conversion other than unboxing, or fail to match, are delegated to a
+     * {@link MethodHandleInvoker}.
+     */
+    private static final class LambdaMethodInvoker implements MethodInvoker {
+
+        private final MethodHandleInvoker fallback;
+
+        private final Class<?> targetType;
+
+        private final Class<?>[] argumentTypes;
+
+        private final boolean[] primitiveArguments;
+
+        private final boolean returnsVoid;
+
+        private final Object function;
+
+        private LambdaMethodInvoker(MethodHandleInvoker fallback, boolean returnsVoid, Object function) {
+            Method method = fallback.getMethod();
+            this.fallback = fallback;
+            this.targetType = (Modifier.isStatic(method.getModifiers()) ? null : method.getDeclaringClass());
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            this.argumentTypes = new Class<?>[parameterTypes.length];
+            this.primitiveArguments = new boolean[parameterTypes.length];
+            for (int i = 0; i < parameterTypes.length; i++) {
+                this.argumentTypes[i] = ClassUtils.resolvePrimitiveIfNecessary(parameterTypes[i]);
+                this.primitiveArguments[i] = parameterTypes[i].isPrimitive();
+            }
+            this.returnsVoid = returnsVoid;
+            this.function = function;
+        }
+
+        /**
+         * Create an invoker for the given method: a {@code LambdaMethodInvoker} where
+         * {@link LambdaMetafactory} can link to the method from this class, and a
+         * {@link MethodHandleInvoker} otherwise.
+         */
+        public static MethodInvoker create(Method method) {
+            MethodHandleInvoker fallback = new MethodHandleInvoker(method);
+            boolean isStatic = Modifier.isStatic(method.getModifiers());
+            int functionArity = method.getParameterTypes().length + (isStatic ? 0 : 1);
+            if (functionArity > 2 || !Modifier.isPublic(method.getModifiers()) ||
+                    !isLinkable(method.getDeclaringClass()) || !isLinkable(method.getReturnType())) {
+                return fallback;
+            }
+            for (Class<?> parameterType : method.getParameterTypes()) {
+                if (!isLinkable(parameterType)) {
+                    return fallback;
+                }
+            }
+            boolean returnsVoid = (method.getReturnType() == void.class);
+            Class<?> functionType;
+            String functionName;
+            if (functionArity == 0) {
+                functionType = (returnsVoid ? Runnable.class : Supplier.class);
+                functionName = (returnsVoid ? "run" : "get");
+            } else if (functionArity == 1) {
+                functionType = (returnsVoid ? Consumer.class : Function.class);
+                functionName = (returnsVoid ? "accept" : "apply");
+            } else {
+                functionType = (returnsVoid ? BiConsumer.class : BiFunction.class);
+                functionName = (returnsVoid ? "accept" : "apply");
+            }
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.lookup();
+                MethodHandle implementation = lookup.unreflect(method);
+                MethodType functionMethodType = MethodType.genericMethodType(functionArity);
+                MethodType instantiatedMethodType = implementation.type().wrap();
+                if (returnsVoid) {
+                    functionMethodType = functionMethodType.changeReturnType(void.class);
+                    instantiatedMethodType = instantiatedMethodType.changeReturnType(void.class);
+                }
+                CallSite callSite = LambdaMetafactory.metafactory(lookup, functionName,
+                        MethodType.methodType(functionType), functionMethodType, implementation,
+                        instantiatedMethodType);
+                return new LambdaMethodInvoker(fallback, returnsVoid, callSite.getTarget().invoke());
+            } catch (Throwable ex) {
+                // Not linkable after all - keep the method handle
+                return fallback;
+            }
+        }
+
+        /**
+         * Determine whether a class generated for this class can refer to the given type:
+         * a public type, visible to the ClassLoader of this class, from outside the JDK
+         * or in a {@code java} package, which modular JDKs always export.
+         */
+        private static boolean isLinkable(Class<?> type) {
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (type.isPrimitive()) {
+                return true;
+            }
+            for (Class<?> cls = type; cls != null; cls = cls.getDeclaringClass()) {
+                if (!Modifier.isPublic(cls.getModifiers())) {
+                    return false;
+                }
+            }
+            return ((type.getClassLoader() != null || type.getName().startsWith("java.")) &&
+                    ClassUtils.isVisible(type, ReflectionUtils.class.getClassLoader()));
+        }
+
+        @Override
+        public Method getMethod() {
+            return this.fallback.getMethod();
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object invoke(Object target, Object... args) {
+            Object[] arguments = (args != null ? args : MethodHandleInvoker.EMPTY_ARGS);
+            if (!hasExactTypes(target, arguments)) {
+                return this.fallback.invoke(target, arguments);
+            }
+            Object first = (this.targetType != null ? target : (arguments.length > 0 ? arguments[0] : null));
+            Object second = (this.targetType != null ? (arguments.length > 0 ? arguments[0] : null) :
+                                     (arguments.length > 1 ? arguments[1] : null));
+            int functionArity = arguments.length + (this.targetType != null ? 1 : 0);
+            try {
+                if (functionArity == 0) {
+                    if (this.returnsVoid) {
+                        ((Runnable) this.function).run();
+                        return null;
+                    }
+                    return ((Supplier<Object>) this.function).get();
+                }
+                if (functionArity == 1) {
+                    if (this.returnsVoid) {
+                        ((Consumer<Object>) this.function).accept(first);
+                        return null;
+                    }
+                    return ((Function<Object, Object>) this.function).apply(first);
+                }
+                if (this.returnsVoid) {
+                    ((BiConsumer<Object, Object>) this.function).accept(first, second);
+                    return null;
+                }
+                return ((BiFunction<Object, Object, Object>) this.function).apply(first, second);
+            } catch (Throwable ex) {
+                rethrowRuntimeException(ex);
+                throw new IllegalStateException("Should never get here");
+            }
+        }
+
+        /**
+         * Determine whether the given target and arguments need no conversion other
+         * than unboxing, so that the function cannot fail on them.
+         */
+        private boolean hasExactTypes(Object target, Object[] args) {
+            if (this.targetType != null && !this.targetType.isInstance(target)) {
+                return false;
+            }
+            if (args.length != this.argumentTypes.length) {
+                return false;
+            }
+            for (int i = 0; i < args.length; i++) {
+                Object arg = args[i];
+                if (arg == null ? this.primitiveArguments[i] : !this.argumentTypes[i].isInstance(arg)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
     /**
      * Pre-built FieldFilter that matches all non-static, non-final fields.
      */
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.proliming.commons.utils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+
+import org.junit.Test;
+
+import com.proliming.commons.utils.ReflectionUtils.FieldAccessor;
+import com.proliming.commons.utils.ReflectionUtils.MethodInvoker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link FieldAccessor} and {@link MethodInvoker} of {@link ReflectionUtils}.
+ */
+public class ReflectionUtilsTest {
+
+    @Test
+    public void fieldAccessorIsCached() {
+        Field field = field("count");
+        assertSame(ReflectionUtils.getFieldAccessor(field), ReflectionUtils.getFieldAccessor(field));
+        assertSame(field, ReflectionUtils.getFieldAccessor(field).getField());
+    }
+
+    @Test
+    public void getAndSetInstanceField() {
+        Sample sample = new Sample();
+        FieldAccessor accessor = ReflectionUtils.getFieldAccessor(field("name"));
+        assertEquals("initial", accessor.get(sample));
+        accessor.set(sample, "changed");
+        assertEquals("changed", sample.name);
+        accessor.set(sample, null);
+        assertNull(accessor.get(sample));
+    }
+
+    @Test
+    public void primitiveGettersWiden() {
+        Sample sample = new Sample();
+        FieldAccessor accessor = ReflectionUtils.getFieldAccessor(field("count"));
+        assertEquals(42, accessor.getInt(sample));
+        assertEquals(42L, accessor.getLong(sample));
+        assertEquals(42f, accessor.getFloat(sample), 0f);
+        assertEquals(42d, accessor.getDouble(sample), 0d);
+        assertEquals(42, accessor.get(sample));
+        assertTrue(ReflectionUtils.getFieldAccessor(field("flag")).getBoolean(sample));
+        assertEquals('x', ReflectionUtils.getFieldAccessor(field("letter")).getChar(sample));
+        assertEquals((byte) 7, ReflectionUtils.getFieldAccessor(field("small")).getByte(sample));
+        assertEquals((short) 7, ReflectionUtils.getFieldAccessor(field("small")).getShort(sample));
+    }
+
+    @Test
+    public void primitiveGettersUnboxWrapperFields() {
+        Sample sample = new Sample();
+        FieldAccessor accessor = ReflectionUtils.getFieldAccessor(field("boxed"));
+        assertEquals(3L, accessor.getLong(sample));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void narrowingPrimitiveGetterIsRejected() {
+        ReflectionUtils.getFieldAccessor(field("count")).getShort(new Sample());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void primitiveGetterOfReferenceFieldIsRejected() {
+        ReflectionUtils.getFieldAccessor(field("name")).getInt(new Sample());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unboxingNullIsRejected() {
+        Sample sample = new Sample();
+        sample.boxed = null;
+        ReflectionUtils.getFieldAccessor(field("boxed")).getLong(sample);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setIncompatibleValueIsRejected() {
+        ReflectionUtils.getFieldAccessor(field("count")).set(new Sample(), "not a number");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setNullPrimitiveIsRejected() {
+        ReflectionUtils.getFieldAccessor(field("count")).set(new Sample(), null);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void targetOfWrongTypeIsRejected() {
+        ReflectionUtils.getFieldAccessor(field("count")).getInt("not a sample");
+    }
+
+    @Test
+    public void setFinalInstanceField() {
+        Sample sample = new Sample();
+        FieldAccessor accessor = ReflectionUtils.getFieldAccessor(field("id"));
+        accessor.set(sample, "other");
+        assertEquals("other", accessor.get(sample));
+    }
+
+    @Test
+    public void staticFieldIgnoresTarget() {
+        FieldAccessor accessor = ReflectionUtils.getFieldAccessor(field("counter"));
+        accessor.set(null, 5);
+        assertEquals(5, accessor.getInt(null));
+        assertEquals(5, accessor.getInt(new Sample()));
+        assertEquals(5, Sample.counter);
+    }
+
+    @Test
+    public void invokeInstanceMethod() {
+        Sample sample = new Sample();
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("add", int.class, int.class));
+        assertEquals(5, invoker.invoke(sample, 2, 3));
+        assertSame(invoker, ReflectionUtils.getMethodInvoker(method("add", int.class, int.class)));
+    }
+
+    @Test
+    public void invokeStaticMethod() {
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("greet", String.class));
+        assertEquals("Hello, world", invoker.invoke(null, "world"));
+        assertEquals("Hello, you", invoker.invoke(new Sample(), "you"));
+    }
+
+    @Test
+    public void invokeVoidMethodWithoutArguments() {
+        Sample sample = new Sample();
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("reset"));
+        assertNull(invoker.invoke(sample));
+        assertNull(invoker.invoke(sample, (Object[]) null));
+        assertEquals(0, sample.count);
+    }
+
+    @Test
+    public void invokePrivateMethod() {
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("secret"));
+        assertEquals("secret", invoker.invoke(new Sample()));
+    }
+
+    @Test
+    public void invokeRethrowsRuntimeException() {
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("fail"));
+        try {
+            invoker.invoke(new Sample());
+            fail("Should have thrown IllegalStateException");
+        } catch (IllegalStateException ex) {
+            assertEquals("failed", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void invokeWrapsCheckedException() {
+        MethodInvoker invoker = ReflectionUtils.getMethodInvoker(method("io"));
+        try {
+            invoker.invoke(new Sample());
+            fail("Should have thrown UndeclaredThrowableException");
+        } catch (UndeclaredThrowableException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokeWithWrongArgumentCountIsRejected() {
+        ReflectionUtils.getMethodInvoker(method("add", int.class, int.class)).invoke(new Sample(), 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokeWithWrongArgumentTypeIsRejected() {
+        ReflectionUtils.getMethodInvoker(method("add", int.class, int.class)).invoke(new Sample(), 1, "2");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokeWithNullPrimitiveArgumentIsRejected() {
+        ReflectionUtils.getMethodInvoker(method("add", int.class, int.class)).invoke(new Sample(), 1, null);
+    }
+
+    @Test
+    public void invokePublicMethods() {
+        PublicSample sample = new PublicSample();
+        ReflectionUtils.getMethodInvoker(publicMethod("setValue", long.class)).invoke(sample, 7L);
+        assertEquals(7L, ReflectionUtils.getMethodInvoker(publicMethod("getValue")).invoke(sample));
+        assertEquals("x7", ReflectionUtils.getMethodInvoker(publicMethod("describe", String.class)).invoke(sample, "x"));
+        assertEquals("a", ReflectionUtils.getMethodInvoker(publicMethod("identity", Object.class)).invoke(null, "a"));
+        assertNull(ReflectionUtils.getMethodInvoker(publicMethod("identity", Object.class)).invoke(null, (Object) null));
+    }
+
+    @Test
+    public void invokePublicMethodWithWideningConversion() {
+        PublicSample sample = new PublicSample();
+        ReflectionUtils.getMethodInvoker(publicMethod("setValue", long.class)).invoke(sample, 3);
+        assertEquals(3L, sample.getValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokePublicMethodWithWrongArgumentTypeIsRejected() {
+        ReflectionUtils.getMethodInvoker(publicMethod("setValue", long.class)).invoke(new PublicSample(), "3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invokePublicMethodOnWrongTargetIsRejected() {
+        ReflectionUtils.getMethodInvoker(publicMethod("getValue")).invoke("not a sample");
+    }
+
+    @Test(expected = ClassCastException.class)
+    public void invokeRethrowsClassCastExceptionOfMethod() {
+        ReflectionUtils.getMethodInvoker(publicMethod("describe", String.class)).invoke(new PublicSample(), "cast");
+    }
+
+    @Test
+    public void invokePublicMethodWrapsCheckedException() {
+        try {
+            ReflectionUtils.getMethodInvoker(publicMethod("io")).invoke(new PublicSample());
+            fail("Should have thrown UndeclaredThrowableException");
+        } catch (UndeclaredThrowableException ex) {
+            assertTrue(ex.getCause() instanceof IOException);
+        }
+    }
+
+    private static Field field(String name) {
+        Field field = ReflectionUtils.findField(Sample.class, name);
+        if (field == null) {
+            throw new IllegalStateException("No field " + name);
+        }
+        return field;
+    }
+
+    private static Method method(String name, Class<?>... paramTypes) {
+        Method method = ReflectionUtils.findMethod(Sample.class, name, paramTypes);
+        if (method == null) {
+            throw new IllegalStateException("No method " + name);
+        }
+        return method;
+    }
+
+    private static Method publicMethod(String name, Class<?>... paramTypes) {
+        Method method = ReflectionUtils.findMethod(PublicSample.class, name, paramTypes);
+        if (method == null) {
+            throw new IllegalStateException("No method " + name);
+        }
+        return method;
+    }
+
+    @SuppressWarnings("unused")
+    private static class Sample {
+
+        private static int counter;
+
+        private final String id = new String("sample");
+
+        private String name = "initial";
+
+        private int count = 42;
+
+        private boolean flag = true;
+
+        private char letter = 'x';
+
+        private byte small = 7;
+
+        private Long boxed = 3L;
+
+        public int add(int a, int b) {
+            return a + b;
+        }
+
+        public static String greet(String name) {
+            return "Hello, " + name;
+        }
+
+        public void reset() {
+            this.count = 0;
+        }
+
+        private String secret() {
+            return "secret";
+        }
+
+        public void fail() {
+            throw new IllegalStateException("failed");
+        }
+
+        public void io() throws IOException {
+            throw new IOException("io");
+        }
+    }
+
+    public static class PublicSample {
+
+        private long value;
+
+        public long getValue() {
+            return this.value;
+        }
+
+        public void setValue(long value) {
+            this.value = value;
+        }
+
+        public String describe(String prefix) {
+            if ("cast".equals(prefix)) {
+                Object value = prefix;
+                return String.valueOf((Integer) value);
+            }
+            return prefix + this.value;
+        }
+
+        public static Object identity(Object value) {
+            return value;
+        }
+
+        public void io() throws IOException {
+            throw new IOException("io");
+        }
+    }
+
+}